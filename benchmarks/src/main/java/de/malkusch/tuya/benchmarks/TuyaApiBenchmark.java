@@ -0,0 +1,114 @@
+package de.malkusch.tuya.benchmarks;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.malkusch.tuya.TuyaApi;
+import de.malkusch.tuya.simulator.Simulator;
+
+/**
+ * Drives {@link TuyaApi#turnOn()} and {@link TuyaApi#isOn()} against
+ * simulated devices which speak the encrypted Tuya protocol on loopback.
+ *
+ * The sample time mode reports the p99 latency, {@code -prof gc} the
+ * allocation rate. Event loop sizes are compared with e.g.
+ * {@code -p devices=1000 -p eventLoopThreads=1,2,4,0}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(MICROSECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@State(Scope.Benchmark)
+public class TuyaApiBenchmark {
+
+    @Param({ "1", "100", "1000" })
+    public int devices;
+
+    /**
+     * 0 is Netty's default of twice the number of cores.
+     */
+    @Param({ "0" })
+    public int eventLoopThreads;
+
+    private Simulator simulator;
+    private TuyaApi.Factory factory;
+    private TuyaApi[] apis;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        simulator = Simulator.build().withDevices(devices).start();
+        factory = TuyaApi.buildFactory().withDiscoveryTimeout(Duration.ofSeconds(30))
+                .withEventLoopThreads(eventLoopThreads).factory();
+
+        List<TuyaApi> apis = new ArrayList<>();
+        for (var result : factory.apis(simulator.localKeys()).values()) {
+            apis.add(result.api());
+        }
+        this.apis = apis.toArray(TuyaApi[]::new);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = (int) Thread.currentThread().getId();
+        private boolean on;
+
+        TuyaApi next(TuyaApi[] apis) {
+            next = (next + 1) % apis.length;
+            return apis[next];
+        }
+
+        boolean toggle() {
+            on = !on;
+            return on;
+        }
+    }
+
+    @Benchmark
+    public boolean isOn(Cursor cursor) throws Exception {
+        return cursor.next(apis).isOn();
+    }
+
+    @Benchmark
+    public void turnOn(Cursor cursor) throws Exception {
+        cursor.next(apis).turnOn();
+    }
+
+    @Benchmark
+    public void toggle(Cursor cursor) throws Exception {
+        var api = cursor.next(apis);
+        if (cursor.toggle()) {
+            api.turnOn();
+        } else {
+            api.turnOff();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (var api : apis) {
+            api.close();
+        }
+        factory.close();
+        simulator.close();
+    }
+}
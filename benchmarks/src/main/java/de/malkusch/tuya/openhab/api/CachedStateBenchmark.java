@@ -0,0 +1,63 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.time.Instant.now;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.gson.Gson;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * Reads a fresh cached state through {@link DeviceApi} and
+ * {@link ReconnectingApi}. Run with {@code -prof gc}: gc.alloc.rate.norm
+ * should be 0 B/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CachedStateBenchmark {
+
+    private EventLoopGroup eventLoopGroup;
+    private Device device;
+    private Api api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        device = new Device(new Gson(), new ApiSync(), eventLoopGroup, new HealthMonitor(eventLoopGroup), "benchmark",
+                "secret".getBytes(), "127.0.0.1", "3.3");
+        var deviceApi = new DeviceApi(device, Duration.ofSeconds(10), Duration.ofDays(1), Metrics.NONE);
+        api = new ReconnectingApi(deviceApi, Duration.ofSeconds(10), Metrics.NONE, Optional.empty());
+        api.syncConnected(true);
+        api.syncState(new Api.State(Power.ON, now()));
+    }
+
+    @Benchmark
+    public Api.State state() throws Exception {
+        return api.state();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        device.close();
+        eventLoopGroup.shutdownGracefully().await();
+    }
+}
@@ -0,0 +1,103 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.gson.Gson;
+
+import de.malkusch.tuya.Metrics;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * Replays a capture of {@code TuyaApi.Factory.Builder.withCapture()} through
+ * {@link ApiSync} and {@link DeviceApi} at full speed. Pass the file with
+ * {@code -p capture=/path/to/capture}. Without one a synthetic capture of 100
+ * devices is used.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+
+    @Param({ "" })
+    public String capture;
+
+    private EventLoopGroup eventLoopGroup;
+    private List<CaptureReader.Event> events;
+    private final Map<String, Device> devices = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        var file = capture.isEmpty() ? synthesize() : Path.of(capture);
+        events = CaptureReader.read(file);
+        eventLoopGroup = new NioEventLoopGroup(1);
+        var health = new HealthMonitor(eventLoopGroup);
+        for (var event : events) {
+            if (devices.containsKey(event.deviceId())) {
+                continue;
+            }
+            var sync = new ApiSync(100);
+            var device = new Device(new Gson(), sync, eventLoopGroup, health, event.deviceId(), "secret".getBytes(),
+                    "127.0.0.1", "3.3");
+            sync.processDeviceStatus(Map.of(1, true));
+            sync.enable(new DeviceApi(device, Duration.ofSeconds(10), Duration.ofMinutes(5), Metrics.NONE));
+            devices.put(event.deviceId(), device);
+        }
+    }
+
+    private static Path synthesize() throws Exception {
+        var file = Files.createTempFile("tuya", ".capture");
+        file.toFile().deleteOnExit();
+        var random = ThreadLocalRandom.current();
+        var writer = new CaptureWriter(file);
+        try (writer) {
+            for (int i = 0; i < 100_000; i++) {
+                var deviceId = "device" + random.nextInt(100);
+                if (random.nextInt(100) == 0) {
+                    writer.connection(deviceId, true);
+                } else {
+                    writer.status(deviceId, Map.of(1, random.nextBoolean(), 18, (double) random.nextInt(16000), 19,
+                            (double) random.nextInt(36000), 20, (double) random.nextInt(2200, 2400)));
+                }
+            }
+        }
+        if (writer.dropped() > 0) {
+            throw new IllegalStateException("Capture dropped " + writer.dropped() + " records");
+        }
+        return file;
+    }
+
+    @Benchmark
+    public int replay() {
+        return CaptureReader.replay(events, deviceId -> devices.get(deviceId).sync);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (var device : devices.values()) {
+            device.close();
+        }
+        eventLoopGroup.shutdownGracefully().await();
+    }
+}
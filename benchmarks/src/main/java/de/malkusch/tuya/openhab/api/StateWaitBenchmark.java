@@ -0,0 +1,206 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Thread.currentThread;
+import static java.time.Duration.between;
+import static java.time.Instant.now;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.google.gson.Gson;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * Many threads wait for a state, each on its own api of one shared device.
+ * The state arrives after {@code stateDelayMillis}.
+ *
+ * {@link #conditionWait(Fixture, Waiter, Counters)} waits in
+ * {@link DeviceApi#waitForState()}, {@link #pollingWait(Fixture, Waiter, Counters)}
+ * in the former monitor wait, which woke up at least every 200 ms. The
+ * expiryChecks counter is two per wait plus one per wakeup. Run with
+ * {@code -prof gc} to compare gc.alloc.rate.norm, scheduling the state
+ * allocates the same for both.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(1)
+@Threads(64)
+public class StateWaitBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration EXPIRATION = Duration.ofMinutes(5);
+
+    @State(Scope.Benchmark)
+    public static class Fixture {
+
+        @Param({ "500" })
+        public long stateDelayMillis;
+
+        private EventLoopGroup eventLoopGroup;
+        private ScheduledExecutorService scheduler;
+        private Device device;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            eventLoopGroup = new NioEventLoopGroup(1);
+            scheduler = newScheduledThreadPool(4);
+            device = new Device(new Gson(), new ApiSync(), eventLoopGroup, new HealthMonitor(eventLoopGroup),
+                    "benchmark", "secret".getBytes(), "127.0.0.1", "3.3");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            device.close();
+            scheduler.shutdownNow();
+            eventLoopGroup.shutdownGracefully().await();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Waiter {
+
+        private volatile long time;
+        private Thread thread;
+        private long expiryChecks;
+        private DeviceApi api;
+        private PollingWait polling;
+        private Runnable state;
+        private Runnable polledState;
+
+        @Setup(Level.Trial)
+        public void setUp(Fixture fixture) {
+            api = new DeviceApi(fixture.device, TIMEOUT, EXPIRATION, Metrics.NONE, this::nanoTime);
+            polling = new PollingWait();
+            var on = new Api.State(Power.ON, now());
+            state = () -> api.syncState(on);
+            polledState = polling::syncState;
+        }
+
+        /**
+         * Counts the expiry checks of the waiting thread. The scheduler reads
+         * the clock, too, when it delivers the state.
+         */
+        private long nanoTime() {
+            if (currentThread() == thread) {
+                expiryChecks++;
+            }
+            return time;
+        }
+
+        private void expire() {
+            thread = currentThread();
+            time = time + EXPIRATION.toNanos();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public long expiryChecks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            expiryChecks = 0;
+        }
+    }
+
+    @Benchmark
+    public void conditionWait(Fixture fixture, Waiter waiter, Counters counters) throws Exception {
+        waiter.expire();
+        var checks = waiter.expiryChecks;
+        fixture.scheduler.schedule(waiter.state, fixture.stateDelayMillis, MILLISECONDS);
+        waiter.api.waitForState();
+        counters.expiryChecks += waiter.expiryChecks - checks;
+    }
+
+    @Benchmark
+    public void pollingWait(Fixture fixture, Waiter waiter, Counters counters) throws Exception {
+        waiter.polling.expire();
+        var checks = waiter.polling.expiryChecks;
+        fixture.scheduler.schedule(waiter.polledState, fixture.stateDelayMillis, MILLISECONDS);
+        waiter.polling.waitForState();
+        counters.expiryChecks += waiter.polling.expiryChecks - checks;
+    }
+
+    /**
+     * The wait of {@link DeviceApi} before it was rebuilt on a condition.
+     */
+    private static final class PollingWait {
+
+        private static final long MAX_WAIT_MILLIS = 200;
+        private static final long MIN_WAIT_MILLIS = 10;
+        private final Object lock = new Object();
+        private volatile Instant expireAt = Instant.MIN;
+        private long expiryChecks;
+
+        void syncState() {
+            synchronized (lock) {
+                expireAt = now().plus(EXPIRATION);
+                lock.notifyAll();
+            }
+        }
+
+        void expire() {
+            expireAt = Instant.MIN;
+        }
+
+        private boolean isExpired() {
+            expiryChecks++;
+            var now = now();
+            return now.isAfter(expireAt) || now.equals(expireAt);
+        }
+
+        void waitForState() throws IOException {
+            var start = now();
+            var waitUntil = start.plus(TIMEOUT);
+            synchronized (lock) {
+                if (!isExpired()) {
+                    return;
+                }
+                while (isExpired()) {
+                    if (now().isAfter(waitUntil)) {
+                        throw new IOException(
+                                "Waiting for state timed out after " + between(start, now()).toMillis() + " ms");
+                    }
+                    try {
+                        lock.wait(waitMillis(waitUntil));
+
+                    } catch (InterruptedException e) {
+                        currentThread().interrupt();
+                        throw new IOException("Waiting for state was interrupted", e);
+                    }
+                }
+            }
+        }
+
+        private static long waitMillis(Instant waitUntil) {
+            var millisUntil = max(MIN_WAIT_MILLIS, between(now(), waitUntil).toMillis());
+            return min(MAX_WAIT_MILLIS, millisUntil);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package de.malkusch.tuya.simulator;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Faults which simulated devices inject into their sessions.
+ *
+ * @param latency
+ *            delay of every frame a device sends
+ * @param packetLoss
+ *            probability that a device drops a frame it would send
+ * @param disconnects
+ *            probability that a device closes the connection instead of
+ *            answering a command
+ */
+public record Faults(Duration latency, double packetLoss, double disconnects) {
+
+    public static final Faults NONE = new Faults(Duration.ZERO, 0, 0);
+
+    public Faults {
+        requireNonNull(latency);
+    }
+
+    boolean lose() {
+        return packetLoss > 0 && ThreadLocalRandom.current().nextDouble() < packetLoss;
+    }
+
+    boolean disconnect() {
+        return disconnects > 0 && ThreadLocalRandom.current().nextDouble() < disconnects;
+    }
+}
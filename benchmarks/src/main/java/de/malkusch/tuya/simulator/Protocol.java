@@ -0,0 +1,180 @@
+package de.malkusch.tuya.simulator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Frames of the Tuya protocol as a device sends and receives them.
+ *
+ * Only the protocols without session key negotiation (3.1 and 3.3) are
+ * simulated.
+ */
+final class Protocol {
+
+    static enum Version {
+        V3_1("3.1", 6666), V3_3("3.3", 6667);
+
+        final String version;
+        final int discoveryPort;
+
+        private Version(String version, int discoveryPort) {
+            this.version = version;
+            this.discoveryPort = discoveryPort;
+        }
+
+        static Version of(String version) {
+            for (var candidate : values()) {
+                if (candidate.version.equals(version)) {
+                    return candidate;
+                }
+            }
+            throw new IllegalArgumentException("Protocol " + version + " isn't simulated");
+        }
+    }
+
+    static final int PREFIX = 0x000055AA;
+    static final int SUFFIX = 0x0000AA55;
+    static final int HEADER_LENGTH = 16;
+    static final int LENGTH_OFFSET = 12;
+
+    static final int CONTROL = 7;
+    static final int STATUS = 8;
+    static final int HEART_BEAT = 9;
+    static final int DP_QUERY = 10;
+    static final int UDP_NEW = 0x13;
+
+    private static final int VERSION_HEADER_LENGTH = 15;
+    private static final int SIGNED_HEADER_LENGTH = 19;
+    private static final byte[] UDP_KEY = md5("yGAdlopoPVldABfn");
+
+    private Protocol() {
+    }
+
+    static record Frame(int sequence, int command, byte[] payload) {
+    }
+
+    /**
+     * Parses a frame which was sent by a client. Client frames don't have a
+     * return code.
+     */
+    static Frame parse(byte[] frame) {
+        var buffer = ByteBuffer.wrap(frame);
+        if (buffer.getInt() != PREFIX) {
+            throw new IllegalArgumentException("Invalid prefix");
+        }
+        var sequence = buffer.getInt();
+        var command = buffer.getInt();
+        var length = buffer.getInt();
+        var payload = Arrays.copyOfRange(frame, HEADER_LENGTH, HEADER_LENGTH + length - 8);
+        return new Frame(sequence, command, payload);
+    }
+
+    /**
+     * Builds a frame as a device sends it, with a return code.
+     */
+    static byte[] frame(int sequence, int command, byte[] payload) {
+        var length = 4 + payload.length + 8;
+        var buffer = ByteBuffer.allocate(HEADER_LENGTH + length);
+        buffer.putInt(PREFIX).putInt(sequence).putInt(command).putInt(length).putInt(0).put(payload);
+        var crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue()).putInt(SUFFIX);
+        return buffer.array();
+    }
+
+    static byte[] discovery(Version version, String deviceId, String ip) {
+        var json = "{\"ip\":\"" + ip + "\",\"gwId\":\"" + deviceId + "\",\"active\":2,\"ablilty\":0,"
+                + "\"encrypt\":true,\"productKey\":\"simulator\",\"version\":\"" + version.version + "\"}";
+        var payload = version == Version.V3_1 ? json.getBytes(UTF_8) : crypt(Cipher.ENCRYPT_MODE, UDP_KEY,
+                json.getBytes(UTF_8));
+        return frame(0, UDP_NEW, payload);
+    }
+
+    /**
+     * Encodes a status. Pushed status frames are versioned, query responses
+     * aren't.
+     */
+    static byte[] status(Version version, byte[] key, String json, boolean push) {
+        switch (version) {
+        case V3_1:
+            if (!push) {
+                return json.getBytes(UTF_8);
+            }
+            var encoded = Base64.getEncoder().encodeToString(crypt(Cipher.ENCRYPT_MODE, key, json.getBytes(UTF_8)));
+            var signature = md5Hex("data=" + encoded + "||lpv=" + version.version + "||" + new String(key, UTF_8))
+                    .substring(8, 24);
+            return (version.version + signature + encoded).getBytes(UTF_8);
+
+        default:
+            var encrypted = crypt(Cipher.ENCRYPT_MODE, key, json.getBytes(UTF_8));
+            if (!push) {
+                return encrypted;
+            }
+            var payload = new byte[VERSION_HEADER_LENGTH + encrypted.length];
+            var header = version.version.getBytes(UTF_8);
+            System.arraycopy(header, 0, payload, 0, header.length);
+            System.arraycopy(encrypted, 0, payload, VERSION_HEADER_LENGTH, encrypted.length);
+            return payload;
+        }
+    }
+
+    /**
+     * Decodes the JSON of a client command.
+     */
+    static String command(Version version, byte[] key, byte[] payload) {
+        if (payload.length == 0 || payload[0] == '{') {
+            return new String(payload, UTF_8);
+        }
+        var versioned = payload.length >= 3 && payload[0] == '3' && payload[1] == '.';
+        switch (version) {
+        case V3_1:
+            if (!versioned) {
+                return "";
+            }
+            var encoded = new String(payload, SIGNED_HEADER_LENGTH, payload.length - SIGNED_HEADER_LENGTH, UTF_8);
+            return new String(crypt(Cipher.DECRYPT_MODE, key, Base64.getDecoder().decode(encoded)), UTF_8);
+
+        default:
+            var encrypted = versioned ? Arrays.copyOfRange(payload, VERSION_HEADER_LENGTH, payload.length)
+                    : payload;
+            if (encrypted.length == 0 || encrypted.length % 16 != 0) {
+                return "";
+            }
+            return new String(crypt(Cipher.DECRYPT_MODE, key, encrypted), UTF_8);
+        }
+    }
+
+    private static byte[] crypt(int mode, byte[] key, byte[] input) {
+        try {
+            var cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+            cipher.init(mode, new SecretKeySpec(key, "AES"));
+            return cipher.doFinal(input);
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String md5Hex(String input) {
+        return HexFormat.of().formatHex(md5(input));
+    }
+
+    private static byte[] md5(String input) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(input.getBytes(UTF_8));
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
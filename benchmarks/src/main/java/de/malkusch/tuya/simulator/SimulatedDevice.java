@@ -0,0 +1,209 @@
+package de.malkusch.tuya.simulator;
+
+import static de.malkusch.tuya.simulator.Protocol.CONTROL;
+import static de.malkusch.tuya.simulator.Protocol.DP_QUERY;
+import static de.malkusch.tuya.simulator.Protocol.HEART_BEAT;
+import static de.malkusch.tuya.simulator.Protocol.LENGTH_OFFSET;
+import static de.malkusch.tuya.simulator.Protocol.STATUS;
+import static de.malkusch.tuya.simulator.Protocol.frame;
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import de.malkusch.tuya.simulator.Protocol.Version;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+/**
+ * A smart plug with metering which listens on port 6668 of its own loopback
+ * address.
+ */
+public final class SimulatedDevice implements AutoCloseable {
+
+    public static final int PORT = 6668;
+    private static final int MAX_FRAME_LENGTH = 4096;
+    private static final System.Logger log = System.getLogger(SimulatedDevice.class.getName());
+
+    private final String id;
+    private final String localKey;
+    private final byte[] key;
+    private final String ip;
+    private final Version version;
+    private final Faults faults;
+    private final Gson gson;
+    private final Map<Integer, Object> datapoints = new ConcurrentHashMap<>();
+    private final Set<Channel> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Channel server;
+
+    SimulatedDevice(Gson gson, EventLoopGroup eventLoopGroup, String id, String localKey, String ip,
+            Version version, Faults faults) throws InterruptedException {
+
+        this.gson = requireNonNull(gson);
+        this.id = requireNonNull(id);
+        this.localKey = requireNonNull(localKey);
+        this.key = localKey.getBytes(UTF_8);
+        this.ip = requireNonNull(ip);
+        this.version = requireNonNull(version);
+        this.faults = requireNonNull(faults);
+        datapoints.put(1, false);
+        meter();
+
+        server = new ServerBootstrap().group(eventLoopGroup).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(
+                                new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, LENGTH_OFFSET, 4, 0, 0),
+                                new Session());
+                    }
+                }).bind(ip, PORT).sync().channel();
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String localKey() {
+        return localKey;
+    }
+
+    public String ip() {
+        return ip;
+    }
+
+    public boolean isOn() {
+        return Boolean.TRUE.equals(datapoints.get(1));
+    }
+
+    byte[] discovery() {
+        return Protocol.discovery(version, id, ip);
+    }
+
+    int discoveryPort() {
+        return version.discoveryPort;
+    }
+
+    /**
+     * Pushes new metering values to all connected clients.
+     */
+    void pushStatus() {
+        meter();
+        for (var session : sessions) {
+            push(session);
+        }
+    }
+
+    /**
+     * Closes all client connections.
+     */
+    void disconnect() {
+        sessions.forEach(Channel::close);
+    }
+
+    private void meter() {
+        var random = ThreadLocalRandom.current();
+        var on = isOn();
+        datapoints.put(18, on ? random.nextInt(100, 10_000) : 0);
+        datapoints.put(19, on ? random.nextInt(10, 23_000) : 0);
+        datapoints.put(20, random.nextInt(2_250, 2_350));
+    }
+
+    private final class Session extends SimpleChannelInboundHandler<ByteBuf> {
+
+        @Override
+        public void channelActive(ChannelHandlerContext context) {
+            sessions.add(context.channel());
+            push(context.channel());
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext context) {
+            sessions.remove(context.channel());
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext context, ByteBuf message) {
+            var frame = Protocol.parse(ByteBufUtil.getBytes(message));
+            if (faults.disconnect()) {
+                log.log(DEBUG, "Disconnecting {0}", id);
+                context.close();
+                return;
+            }
+            switch (frame.command()) {
+            case HEART_BEAT:
+                send(context.channel(), frame.sequence(), HEART_BEAT, new byte[0]);
+                break;
+
+            case DP_QUERY:
+                send(context.channel(), frame.sequence(), DP_QUERY, Protocol.status(version, key, status(), false));
+                break;
+
+            case CONTROL:
+                var json = Protocol.command(version, key, frame.payload());
+                var dps = gson.fromJson(json, JsonObject.class).getAsJsonObject("dps");
+                dps.entrySet().forEach(it -> datapoints.put(Integer.valueOf(it.getKey()),
+                        gson.fromJson(it.getValue(), Object.class)));
+                meter();
+                send(context.channel(), frame.sequence(), CONTROL, new byte[0]);
+                push(context.channel());
+                break;
+
+            default:
+                log.log(DEBUG, "Ignoring command {0}", frame.command());
+            }
+        }
+    }
+
+    private void push(Channel channel) {
+        send(channel, sequence.incrementAndGet(), STATUS, Protocol.status(version, key, status(), true));
+    }
+
+    private void send(Channel channel, int sequence, int command, byte[] payload) {
+        if (faults.lose()) {
+            log.log(DEBUG, "Losing command {0} of {1}", command, id);
+            return;
+        }
+        var frame = Unpooled.wrappedBuffer(frame(sequence, command, payload));
+        var latency = faults.latency().toNanos();
+        if (latency == 0) {
+            channel.writeAndFlush(frame);
+        } else {
+            channel.eventLoop().schedule(() -> channel.writeAndFlush(frame), latency, NANOSECONDS);
+        }
+    }
+
+    private String status() {
+        var status = new JsonObject();
+        status.addProperty("devId", id);
+        status.add("dps", gson.toJsonTree(datapoints));
+        status.addProperty("t", System.currentTimeMillis() / 1000);
+        return gson.toJson(status);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        disconnect();
+        server.close().sync();
+    }
+}
@@ -0,0 +1,190 @@
+package de.malkusch.tuya.simulator;
+
+import static java.lang.System.Logger.Level.WARNING;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.gson.Gson;
+
+import de.malkusch.tuya.simulator.Protocol.Version;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * Runs simulated devices on loopback addresses 127.1.x.y and announces them
+ * on the local discovery ports.
+ *
+ * On Linux the whole 127.0.0.0/8 network is routed to the loopback
+ * interface. Other systems need an alias for each address.
+ */
+public final class Simulator implements AutoCloseable {
+
+    public static final class Builder {
+        private int devices = 1;
+        private String protocolVersion = "3.3";
+        private Faults faults = Faults.NONE;
+        private Duration broadcastInterval = Duration.ofSeconds(1);
+        private Duration statusInterval = Duration.ZERO;
+        private Duration disconnectInterval = Duration.ZERO;
+
+        public Builder withDevices(int devices) {
+            this.devices = devices;
+            return this;
+        }
+
+        /**
+         * @param protocolVersion
+         *            3.1 or 3.3
+         */
+        public Builder withProtocolVersion(String protocolVersion) {
+            this.protocolVersion = protocolVersion;
+            return this;
+        }
+
+        public Builder withFaults(Faults faults) {
+            this.faults = faults;
+            return this;
+        }
+
+        public Builder withBroadcastInterval(Duration broadcastInterval) {
+            this.broadcastInterval = broadcastInterval;
+            return this;
+        }
+
+        /**
+         * Every device pushes new metering values in this interval.
+         */
+        public Builder withStatusInterval(Duration statusInterval) {
+            this.statusInterval = statusInterval;
+            return this;
+        }
+
+        /**
+         * One random device drops all its connections in this interval.
+         */
+        public Builder withDisconnectInterval(Duration disconnectInterval) {
+            this.disconnectInterval = disconnectInterval;
+            return this;
+        }
+
+        public Simulator start() throws IOException, InterruptedException {
+            return new Simulator(this);
+        }
+    }
+
+    public static Builder build() {
+        return new Builder();
+    }
+
+    private static final System.Logger log = System.getLogger(Simulator.class.getName());
+
+    private final EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    private final ScheduledExecutorService scheduler = newSingleThreadScheduledExecutor();
+    private final DatagramSocket socket;
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+
+    private Simulator(Builder builder) throws IOException, InterruptedException {
+        socket = new DatagramSocket();
+        var gson = new Gson();
+        var version = Version.of(builder.protocolVersion);
+        for (var i = 0; i < builder.devices; i++) {
+            var id = String.format("simulated%013d", i);
+            var localKey = String.format("key%013d", i);
+            var ip = "127.1." + (i / 250) + "." + (i % 250 + 1);
+            devices.add(new SimulatedDevice(gson, eventLoopGroup, id, localKey, ip, version, builder.faults));
+        }
+        schedule(this::broadcast, builder.broadcastInterval);
+        schedule(() -> devices.forEach(SimulatedDevice::pushStatus), builder.statusInterval);
+        schedule(this::disconnectRandomDevice, builder.disconnectInterval);
+    }
+
+    private void schedule(Runnable task, Duration interval) {
+        if (interval.isZero()) {
+            return;
+        }
+        scheduler.scheduleAtFixedRate(task, 0, interval.toMillis(), MILLISECONDS);
+    }
+
+    public List<SimulatedDevice> devices() {
+        return devices;
+    }
+
+    /**
+     * @return local keys by device id
+     */
+    public Map<String, String> localKeys() {
+        var localKeys = new LinkedHashMap<String, String>();
+        devices.forEach(it -> localKeys.put(it.id(), it.localKey()));
+        return localKeys;
+    }
+
+    private void broadcast() {
+        try {
+            var address = InetAddress.getLoopbackAddress();
+            for (var device : devices) {
+                var discovery = device.discovery();
+                socket.send(new DatagramPacket(discovery, discovery.length, address, device.discoveryPort()));
+            }
+        } catch (IOException e) {
+            log.log(WARNING, "Broadcasting failed", e);
+        }
+    }
+
+    private void disconnectRandomDevice() {
+        if (devices.isEmpty()) {
+            return;
+        }
+        var index = ThreadLocalRandom.current().nextInt(devices.size());
+        devices.get(index).disconnect();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdownNow();
+        socket.close();
+        for (var device : devices) {
+            device.close();
+        }
+        eventLoopGroup.shutdownGracefully().sync();
+    }
+
+    /**
+     * Runs a simulator until the process is terminated.
+     *
+     * Arguments: devices, protocol version, latency in ms, packet loss,
+     * disconnect probability, status interval in ms
+     */
+    public static void main(String[] args) throws Exception {
+        var builder = build();
+        if (args.length > 0) {
+            builder.withDevices(Integer.parseInt(args[0]));
+        }
+        if (args.length > 1) {
+            builder.withProtocolVersion(args[1]);
+        }
+        if (args.length > 4) {
+            builder.withFaults(new Faults(Duration.ofMillis(Long.parseLong(args[2])), Double.parseDouble(args[3]),
+                    Double.parseDouble(args[4])));
+        }
+        if (args.length > 5) {
+            builder.withStatusInterval(Duration.ofMillis(Long.parseLong(args[5])));
+        }
+        try (var simulator = builder.start()) {
+            simulator.localKeys().forEach((id, localKey) -> System.out.println(id + " " + localKey));
+            new CountDownLatch(1).await();
+        }
+    }
+}
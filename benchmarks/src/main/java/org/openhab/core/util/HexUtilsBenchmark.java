@@ -0,0 +1,133 @@
+package org.openhab.core.util;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the table driven {@link HexUtils} methods with the previous
+ * implementation, which is kept in {@link Legacy}. Run with {@code -prof gc}
+ * to compare the allocations per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class HexUtilsBenchmark {
+
+    @Param({ "32", "1024" })
+    public int frameSize;
+
+    private byte[] frame;
+    private ByteBuffer buffer;
+    private String hex;
+    private char[] chars;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        frame = new byte[frameSize];
+        ThreadLocalRandom.current().nextBytes(frame);
+        buffer = ByteBuffer.allocateDirect(frameSize).put(frame).flip();
+        hex = HexUtils.bytesToHex(frame);
+        chars = new char[frameSize * 2];
+        bytes = new byte[frameSize];
+    }
+
+    @Benchmark
+    public String legacyBytesToHex() {
+        return Legacy.bytesToHex(frame);
+    }
+
+    @Benchmark
+    public String bytesToHex() {
+        return HexUtils.bytesToHex(frame);
+    }
+
+    @Benchmark
+    public char[] bytesToHexIntoArray() {
+        HexUtils.bytesToHex(frame, 0, frame.length, chars, 0);
+        return chars;
+    }
+
+    @Benchmark
+    public char[] byteBufferToHexIntoArray() {
+        HexUtils.bytesToHex(buffer.duplicate(), chars, 0);
+        return chars;
+    }
+
+    @Benchmark
+    public byte[] legacyHexToBytes() {
+        return Legacy.hexToBytes(hex);
+    }
+
+    @Benchmark
+    public byte[] hexToBytes() {
+        return HexUtils.hexToBytes(hex);
+    }
+
+    @Benchmark
+    public byte[] hexToBytesIntoArray() {
+        HexUtils.hexToBytes(hex, 0, hex.length(), bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * The implementation before the lookup tables.
+     */
+    private static final class Legacy {
+
+        private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D',
+                'E', 'F' };
+
+        static String bytesToHex(byte[] bytes) {
+            final StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte value : bytes) {
+                final byte[] hex = byteToHex(value);
+                sb.append((char) hex[0]);
+                sb.append((char) hex[1]);
+            }
+            return sb.toString();
+        }
+
+        static byte[] byteToHex(final byte value) {
+            final byte[] out = new byte[2];
+            out[0] = HEX[(value >>> 4) & 0x0F];
+            out[1] = HEX[value & 0x0F];
+            return out;
+        }
+
+        static byte[] hexToBytes(String hexString) {
+            final String[] splitted = hexString.toUpperCase().split("(?<=\\G.{2})");
+            final byte[] bytes = new byte[splitted.length];
+            int pos = 0;
+            for (final String part : splitted) {
+                final byte[] in = part.getBytes(StandardCharsets.UTF_8);
+                bytes[pos++] = (byte) (unhex(in[0]) << 4 | unhex(in[1]));
+            }
+            return bytes;
+        }
+
+        private static byte unhex(byte value) {
+            if ('0' <= value && value <= '9') {
+                return (byte) (value - 48);
+            } else if ('A' <= value && value <= 'F') {
+                return (byte) (value - 65 + 10);
+            } else {
+                throw new IllegalArgumentException("hexString contains illegal character for hexToBytes: " + value);
+            }
+        }
+    }
+}
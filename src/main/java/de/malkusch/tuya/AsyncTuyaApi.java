@@ -0,0 +1,29 @@
+package de.malkusch.tuya;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non blocking variant of {@link TuyaApi}.
+ *
+ * The returned futures complete from the device's event loop, failed ones
+ * with an {@link java.io.IOException}. Use the {@code *Async} variants for
+ * dependent stages which might block.
+ */
+public interface AsyncTuyaApi extends AutoCloseable {
+
+    CompletableFuture<Void> turnOn();
+
+    CompletableFuture<Void> turnOff();
+
+    CompletableFuture<Boolean> isOn();
+
+    /**
+     * @return the last value the device reported, without network access
+     */
+    <T> Optional<T> get(Datapoint<T> datapoint);
+
+    Metering metering();
+
+    boolean isOnline();
+}
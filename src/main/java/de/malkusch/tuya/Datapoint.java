@@ -0,0 +1,110 @@
+package de.malkusch.tuya;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A typed datapoint (DP) of a device.
+ *
+ * The ids of the well known constants follow the common smart plug schema.
+ * Other devices may use different ids or units.
+ */
+public final class Datapoint<T> {
+
+    public static final Datapoint<Boolean> SWITCH = bool(1);
+
+    /**
+     * Seconds until the switch toggles.
+     */
+    public static final Datapoint<Long> COUNTDOWN = integer(9);
+
+    /**
+     * Energy added since the last report in 0.001 kWh.
+     */
+    public static final Datapoint<Long> ADDED_ENERGY = integer(17);
+
+    /**
+     * Current in mA.
+     */
+    public static final Datapoint<Long> CURRENT = integer(18);
+
+    /**
+     * Power in 0.1 W.
+     */
+    public static final Datapoint<Long> POWER = integer(19);
+
+    /**
+     * Voltage in 0.1 V.
+     */
+    public static final Datapoint<Long> VOLTAGE = integer(20);
+
+    public static Datapoint<Boolean> bool(int id) {
+        return new Datapoint<>(id, raw -> raw instanceof Boolean value ? value : null, value -> value);
+    }
+
+    public static Datapoint<Long> integer(int id) {
+        return new Datapoint<>(id, raw -> raw instanceof Number value ? value.longValue() : null, value -> value);
+    }
+
+    public static Datapoint<String> string(int id) {
+        return new Datapoint<>(id, raw -> raw instanceof String value ? value : null, value -> value);
+    }
+
+    private final int id;
+    private final Function<Object, T> decoder;
+    private final Function<T, Object> encoder;
+
+    private Datapoint(int id, Function<Object, T> decoder, Function<T, Object> encoder) {
+        this.id = id;
+        this.decoder = decoder;
+        this.encoder = encoder;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return the typed value, or empty if the raw value has another type
+     */
+    public Optional<T> decode(Object raw) {
+        return Optional.ofNullable(decoder.apply(raw));
+    }
+
+    public Object encode(T value) {
+        return encoder.apply(requireNonNull(value));
+    }
+
+    @Override
+    public String toString() {
+        return "DP " + id;
+    }
+
+    public static Command command() {
+        return new Command();
+    }
+
+    /**
+     * Values for several datapoints which are sent in one frame.
+     */
+    public static final class Command {
+        private final Map<Integer, Object> values = new LinkedHashMap<>();
+
+        private Command() {
+        }
+
+        public <T> Command with(Datapoint<T> datapoint, T value) {
+            values.put(datapoint.id, datapoint.encode(value));
+            return this;
+        }
+
+        public Map<Integer, Object> values() {
+            return unmodifiableMap(values);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package de.malkusch.tuya;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Last known state of all devices of a {@link TuyaApi.Factory}.
+ *
+ * The state is pushed by the devices, reading it never touches the network.
+ */
+public interface FleetState {
+
+    /**
+     * @param time
+     *            {@link Instant#MIN} if the device never reported a state
+     */
+    public static record DeviceState(String deviceId, boolean on, Instant time, boolean online) {
+    }
+
+    public static interface Listener {
+
+        /**
+         * Called from the device's event loop when the power or the online
+         * status of a device changed. Implementations must not block.
+         */
+        void changed(DeviceState state);
+    }
+
+    Map<String, DeviceState> snapshot();
+
+    Optional<DeviceState> state(String deviceId);
+
+    void addListener(Listener listener);
+
+    void removeListener(Listener listener);
+}
@@ -0,0 +1,42 @@
+package de.malkusch.tuya;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Outcome of switching a group of devices, see
+ * {@link TuyaApi.Factory#switchGroupOn(java.util.Collection, int, Duration)}.
+ *
+ * @param outcomes
+ *            outcome by device id, in the order the devices were switched
+ */
+public record GroupResult(Map<String, Outcome> outcomes) {
+
+    /**
+     * @param latency
+     *            time from starting the command until the device confirmed or
+     *            the command failed
+     */
+    public static record Outcome(Duration latency, Optional<Exception> error) {
+
+        public boolean isSuccess() {
+            return error.isEmpty();
+        }
+    }
+
+    public boolean isSuccess() {
+        return outcomes.values().stream().allMatch(Outcome::isSuccess);
+    }
+
+    public Map<String, Exception> failures() {
+        return outcomes.entrySet().stream().filter(it -> !it.getValue().isSuccess())
+                .collect(toMap(Map.Entry::getKey, it -> it.getValue().error().get()));
+    }
+
+    public Duration maxLatency() {
+        return outcomes.values().stream().map(Outcome::latency).max(Duration::compareTo).orElse(Duration.ZERO);
+    }
+}
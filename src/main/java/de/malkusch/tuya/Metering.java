@@ -0,0 +1,42 @@
+package de.malkusch.tuya;
+
+import java.time.Duration;
+
+/**
+ * Power, current and voltage samples of one device.
+ *
+ * A sample is recorded whenever the device reports any of these
+ * datapoints. The history is limited to the size configured with
+ * {@link TuyaApi.Factory.Builder#withMetering(int)}.
+ */
+public interface Metering {
+
+    public static record Aggregate(int samples, double averageWatts, double minWatts, double maxWatts,
+            double kiloWattHours) {
+    }
+
+    public static interface Listener {
+
+        /**
+         * Called from the device's event loop. Implementations must not block.
+         */
+        void sample(long epochMillis, double watts, double amperes, double volts);
+    }
+
+    /**
+     * Aggregates the samples of the last window. The energy is integrated
+     * between consecutive samples.
+     */
+    Aggregate aggregate(Duration window);
+
+    /**
+     * Copies the history, oldest first, into the given arrays.
+     *
+     * @return number of copied samples, limited by the shortest array
+     */
+    int history(long[] epochMillis, double[] watts, double[] amperes, double[] volts);
+
+    void subscribe(Listener listener);
+
+    void unsubscribe(Listener listener);
+}
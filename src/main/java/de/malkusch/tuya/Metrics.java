@@ -0,0 +1,45 @@
+package de.malkusch.tuya;
+
+/**
+ * Receives measurements of every device operation.
+ *
+ * Measurements are passed as primitives together with the device id, so
+ * recording doesn't allocate. Implementations are called from the calling
+ * threads and the event loop and must not block, e.g. by looking up
+ * precomputed per device meters.
+ */
+public interface Metrics {
+
+    public static final Metrics NONE = new Metrics() {
+    };
+
+    public static enum Operation {
+        DISCOVERY, CONNECT, STATE
+    }
+
+    /**
+     * @param success
+     *            false if the device reported a different state, didn't
+     *            answer or waiting was interrupted
+     */
+    default void sent(String deviceId, long nanos, boolean success) {
+    }
+
+    default void stateWaited(String deviceId, long nanos) {
+    }
+
+    default void stateCacheHit(String deviceId) {
+    }
+
+    default void stateCacheMiss(String deviceId) {
+    }
+
+    default void reconnected(String deviceId, long nanos, boolean success) {
+    }
+
+    default void discovered(String deviceId, long nanos) {
+    }
+
+    default void timedOut(String deviceId, Operation operation) {
+    }
+}
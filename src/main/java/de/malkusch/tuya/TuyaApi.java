@@ -1,12 +1,27 @@
 package de.malkusch.tuya;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import de.malkusch.tuya.openhab.OpenhabTuyaApi;
+import de.malkusch.tuya.openhab.api.Api;
+import io.netty.channel.EventLoopGroup;
+
+import static java.util.Objects.requireNonNull;
 
 public interface TuyaApi extends AutoCloseable {
     public interface Factory extends AutoCloseable {
+
+        /**
+         * Devices which {@link #apis(Map)} creates at the same time.
+         */
+        public static final int DEFAULT_PARALLELISM = 16;
+
         public static class Builder {
             private final static Duration DEFAULT_DEVICE_TIMEOUT = Duration.ofSeconds(10);
             private final static Duration DEFAULT_DISCOVERY_TIMEOUT = Duration.ofSeconds(10);
@@ -15,6 +30,16 @@ public interface TuyaApi extends AutoCloseable {
             private Duration deviceTimeout = DEFAULT_DEVICE_TIMEOUT;
             private Duration discoveryTimeout = DEFAULT_DISCOVERY_TIMEOUT;
             private Duration expiration = DEFAULT_EXPIRATION;
+            private boolean coalescing = false;
+            private Optional<Duration> idempotence = Optional.empty();
+            private int meterCapacity = 0;
+            private Metrics metrics = Metrics.NONE;
+            private Optional<Api.BackgroundReconnects> reconnects = Optional.empty();
+            private Optional<Path> discoveryCache = Optional.empty();
+            private boolean verifyStaticAddresses = false;
+            private Optional<EventLoopGroup> eventLoopGroup = Optional.empty();
+            private int eventLoopThreads = 0;
+            private Optional<Path> capture = Optional.empty();
 
             public Builder withDeviceTimeout(Duration deviceTimeout) {
                 this.deviceTimeout = deviceTimeout;
@@ -31,12 +56,343 @@ public interface TuyaApi extends AutoCloseable {
                 return this;
             }
 
+            /**
+             * Commands for one device which arrive while another one is in
+             * flight collapse into the latest requested power. Blocking
+             * commands wait for that confirmation and fail if the latest
+             * power differs from theirs.
+             */
+            public Builder withCommandCoalescing() {
+                this.coalescing = true;
+                return this;
+            }
+
+            /**
+             * Sends are skipped if a state younger than the freshness window
+             * already has the requested power.
+             */
+            public Builder withIdempotentSends(Duration freshness) {
+                this.idempotence = Optional.of(freshness);
+                return this;
+            }
+
+            /**
+             * Keeps the last power, current and voltage samples of each
+             * device. Without history only the metering stream is available.
+             *
+             * @param historySize
+             *            samples per device, at least 1
+             */
+            public Builder withMetering(int historySize) {
+                if (historySize < 1) {
+                    throw new IllegalArgumentException("History size must be positive");
+                }
+                this.meterCapacity = historySize;
+                return this;
+            }
+
+            public Builder withMetrics(Metrics metrics) {
+                this.metrics = requireNonNull(metrics);
+                return this;
+            }
+
+            /**
+             * Offline devices are reconnected in the background with an
+             * exponential backoff, and calls to them fail immediately.
+             *
+             * @param maxConcurrentReconnects
+             *            reconnects which may run at the same time across all
+             *            devices
+             */
+            public Builder withBackgroundReconnects(int maxConcurrentReconnects, Duration initialBackoff,
+                    Duration maxBackoff) {
+
+                this.reconnects = Optional
+                        .of(new Api.BackgroundReconnects(maxConcurrentReconnects, initialBackoff, maxBackoff));
+                return this;
+            }
+
+            /**
+             * Discovery results are kept in this file. After a restart known
+             * devices connect right away, and a device whose address changed
+             * falls back to discovery.
+             */
+            public Builder withDiscoveryCache(Path file) {
+                this.discoveryCache = Optional.of(file);
+                return this;
+            }
+
+            /**
+             * Devices with a static address still listen for discovery
+             * broadcasts and log a warning if one disagrees with the
+             * configured address. If a broadcast already disagreed when the
+             * device is created, the announced address is used instead.
+             */
+            public Builder withStaticAddressVerification() {
+                this.verifyStaticAddresses = true;
+                return this;
+            }
+
+            /**
+             * Size of the factory's event loop group for device connections.
+             * The default is Netty's default of twice the number of cores.
+             * Can't be combined with {@link #withEventLoopGroup(EventLoopGroup)}.
+             */
+            public Builder withEventLoopThreads(int threads) {
+                if (threads < 0) {
+                    throw new IllegalArgumentException("Event loop threads must not be negative");
+                }
+                this.eventLoopThreads = threads;
+                return this;
+            }
+
+            /**
+             * Device connections run on this group instead of an own one. The
+             * factory doesn't shut it down.
+             *
+             * The underlying binding opens NIO channels, so the group must
+             * support them, e.g. a {@code NioEventLoopGroup}.
+             */
+            public Builder withEventLoopGroup(EventLoopGroup eventLoopGroup) {
+                this.eventLoopGroup = Optional.of(eventLoopGroup);
+                return this;
+            }
+
+            /**
+             * The decoded status and connection messages of every device are
+             * logged into this file in a compact binary format. Raw frames
+             * aren't captured. Writing happens in the background and drops
+             * messages rather than blocking the device I/O.
+             *
+             * The format isn't a public API. The capture is read by the
+             * {@code ReplayBenchmark} of the benchmarks module.
+             */
+            public Builder withCapture(Path file) {
+                this.capture = Optional.of(file);
+                return this;
+            }
+
             public Factory factory() {
-                return new OpenhabTuyaApi.Factory(deviceTimeout, discoveryTimeout, expiration);
+                if (eventLoopGroup.isPresent() && eventLoopThreads != 0) {
+                    throw new IllegalStateException("Event loop threads can't be set for an external event loop group");
+                }
+                return new OpenhabTuyaApi.Factory(new Options(this));
+            }
+
+            /**
+             * The settings of a builder. Only the builder creates them.
+             *
+             * Settings are plain values, so this type doesn't expose the
+             * factory's internal types.
+             */
+            public static final class Options {
+                private final Duration deviceTimeout;
+                private final Duration discoveryTimeout;
+                private final Duration expiration;
+                private final boolean coalescing;
+                private final Optional<Duration> idempotence;
+                private final int meterCapacity;
+                private final Metrics metrics;
+                private final int maxConcurrentReconnects;
+                private final Duration initialReconnectBackoff;
+                private final Duration maxReconnectBackoff;
+                private final Optional<Path> discoveryCache;
+                private final boolean verifyStaticAddresses;
+                private final Optional<EventLoopGroup> eventLoopGroup;
+                private final int eventLoopThreads;
+                private final Optional<Path> capture;
+
+                private Options(Builder builder) {
+                    this.deviceTimeout = requireNonNull(builder.deviceTimeout);
+                    this.discoveryTimeout = requireNonNull(builder.discoveryTimeout);
+                    this.expiration = requireNonNull(builder.expiration);
+                    this.coalescing = builder.coalescing;
+                    this.idempotence = builder.idempotence;
+                    this.meterCapacity = builder.meterCapacity;
+                    this.metrics = builder.metrics;
+                    this.maxConcurrentReconnects = builder.reconnects.map(Api.BackgroundReconnects::maxConcurrent)
+                            .orElse(0);
+                    this.initialReconnectBackoff = builder.reconnects.map(Api.BackgroundReconnects::initialBackoff)
+                            .orElse(Duration.ZERO);
+                    this.maxReconnectBackoff = builder.reconnects.map(Api.BackgroundReconnects::maxBackoff)
+                            .orElse(Duration.ZERO);
+                    this.discoveryCache = builder.discoveryCache;
+                    this.verifyStaticAddresses = builder.verifyStaticAddresses;
+                    this.eventLoopGroup = builder.eventLoopGroup;
+                    this.eventLoopThreads = builder.eventLoopThreads;
+                    this.capture = builder.capture;
+                }
+
+                public Duration deviceTimeout() {
+                    return deviceTimeout;
+                }
+
+                public Duration discoveryTimeout() {
+                    return discoveryTimeout;
+                }
+
+                public Duration expiration() {
+                    return expiration;
+                }
+
+                public boolean coalescing() {
+                    return coalescing;
+                }
+
+                public Optional<Duration> idempotence() {
+                    return idempotence;
+                }
+
+                public int meterCapacity() {
+                    return meterCapacity;
+                }
+
+                public Metrics metrics() {
+                    return metrics;
+                }
+
+                /**
+                 * @return 0 if offline devices are reconnected by the calling
+                 *         thread, then both backoffs are zero as well
+                 */
+                public int maxConcurrentReconnects() {
+                    return maxConcurrentReconnects;
+                }
+
+                public Duration initialReconnectBackoff() {
+                    return initialReconnectBackoff;
+                }
+
+                public Duration maxReconnectBackoff() {
+                    return maxReconnectBackoff;
+                }
+
+                public Optional<Path> discoveryCache() {
+                    return discoveryCache;
+                }
+
+                public boolean verifyStaticAddresses() {
+                    return verifyStaticAddresses;
+                }
+
+                public Optional<EventLoopGroup> eventLoopGroup() {
+                    return eventLoopGroup;
+                }
+
+                public int eventLoopThreads() {
+                    return eventLoopThreads;
+                }
+
+                public Optional<Path> capture() {
+                    return capture;
+                }
+            }
+        }
+
+        public static final class Result {
+            private final TuyaApi api;
+            private final Exception error;
+
+            private Result(TuyaApi api, Exception error) {
+                this.api = api;
+                this.error = error;
+            }
+
+            public static Result success(TuyaApi api) {
+                return new Result(requireNonNull(api), null);
+            }
+
+            public static Result failure(Exception error) {
+                return new Result(null, requireNonNull(error));
+            }
+
+            public boolean isSuccess() {
+                return api != null;
+            }
+
+            public TuyaApi api() throws IOException {
+                if (error instanceof IOException e) {
+                    throw e;
+                }
+                if (error != null) {
+                    throw new IOException("Creating device failed", error);
+                }
+                return api;
+            }
+
+            public Optional<Exception> error() {
+                return Optional.ofNullable(error);
             }
         }
 
         TuyaApi api(String deviceId, String localKey) throws IOException;
+
+        AsyncTuyaApi asyncApi(String deviceId, String localKey) throws IOException;
+
+        /**
+         * Connects to a known address without discovery, e.g. for devices
+         * whose broadcasts don't reach this host.
+         *
+         * @param protocolVersion
+         *            e.g. "3.3"
+         */
+        TuyaApi api(String deviceId, String localKey, String address, String protocolVersion) throws IOException;
+
+        AsyncTuyaApi asyncApi(String deviceId, String localKey, String address, String protocolVersion)
+                throws IOException;
+
+        /**
+         * Creates the devices concurrently, at most
+         * {@value #DEFAULT_PARALLELISM} at the same time. Each pending device
+         * occupies a thread while it waits for discovery and its first state.
+         *
+         * @param localKeys local keys by device id
+         * @return one result per device id, successful or failed
+         */
+        Map<String, Result> apis(Map<String, String> localKeys) throws IOException;
+
+        /**
+         * Creates all devices concurrently. If creating is interrupted, apis
+         * which were already created are closed.
+         *
+         * @param localKeys local keys by device id
+         * @param parallelism
+         *            maximum number of devices which are created at the same
+         *            time
+         * @return one result per device id, successful or failed
+         */
+        Map<String, Result> apis(Map<String, String> localKeys, int parallelism) throws IOException;
+
+        /**
+         * Switches devices of this factory on with a bounded number of
+         * concurrent commands. Device starts are spaced by the stagger, which spreads
+         * inrush current and Wi-Fi load.
+         *
+         * @param deviceIds
+         *            devices which were created by this factory
+         * @param parallelism
+         *            maximum number of devices which are switched at the same
+         *            time
+         * @param stagger
+         *            delay between the starts of two devices, zero starts them
+         *            as fast as the parallelism allows
+         * @return one outcome per device id, failed for unknown devices
+         */
+        GroupResult switchGroupOn(Collection<String> deviceIds, int parallelism, Duration stagger) throws IOException;
+
+        /**
+         * Switches devices of this factory off, like
+         * {@link #switchGroupOn(Collection, int, Duration)}.
+         */
+        GroupResult switchGroupOff(Collection<String> deviceIds, int parallelism, Duration stagger) throws IOException;
+
+        FleetState fleetState();
+
+        /**
+         * @return number of sends which were skipped by
+         *         {@link Builder#withIdempotentSends(Duration)}
+         */
+        long avoidedSends();
     }
 
     public static Factory.Builder buildFactory() {
@@ -49,5 +405,31 @@ public interface TuyaApi extends AutoCloseable {
 
     boolean isOn() throws IOException;
 
+    /**
+     * Switches without waiting for the device. {@link #isOn()} and the
+     * {@link FleetState} reflect the new state right away. Skipping redundant
+     * sends only considers confirmed states.
+     *
+     * @return completes when the device confirmed the new state, or
+     *         exceptionally if it reported a different state or didn't
+     *         answer, in which case the cached state is discarded and the
+     *         fleet state reverts to the last confirmed state
+     */
+    CompletableFuture<Void> turnOnOptimistically();
+
+    /**
+     * @see #turnOnOptimistically()
+     */
+    CompletableFuture<Void> turnOffOptimistically();
+
+    /**
+     * @return the last value the device reported, without network access
+     */
+    <T> Optional<T> get(Datapoint<T> datapoint);
+
+    void set(Datapoint.Command command) throws IOException;
+
+    Metering metering();
+
     boolean isOnline();
 }
@@ -0,0 +1,51 @@
+package de.malkusch.tuya.openhab;
+
+import de.malkusch.tuya.openhab.api.Api;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The live api of each device, kept in sync with the fleet state.
+ *
+ * Closing an api only unregisters it if it is still the registered one. A
+ * stale api, e.g. a replaced one, must not remove its replacement.
+ */
+final class ApiRegistry implements Api.Observer {
+
+    private final Map<String, Api> apis = new ConcurrentHashMap<>();
+    private final OpenhabFleetState fleetState;
+
+    ApiRegistry(OpenhabFleetState fleetState) {
+        this.fleetState = requireNonNull(fleetState);
+    }
+
+    Api register(String deviceId, Api api) {
+        apis.put(deviceId, api);
+        return api;
+    }
+
+    Optional<Api> api(String deviceId) {
+        return Optional.ofNullable(apis.get(deviceId));
+    }
+
+    @Override
+    public void stateChanged(String deviceId, Api.State state) {
+        fleetState.stateChanged(deviceId, state);
+    }
+
+    @Override
+    public void connectionChanged(String deviceId, boolean connected) {
+        fleetState.connectionChanged(deviceId, connected);
+    }
+
+    @Override
+    public void closed(String deviceId, Api api) {
+        if (apis.remove(deviceId, api) || !apis.containsKey(deviceId)) {
+            fleetState.closed(deviceId, api);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package de.malkusch.tuya.openhab;
+
+import de.malkusch.tuya.TuyaApi;
+import de.malkusch.tuya.TuyaApi.Factory.Result;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static de.malkusch.tuya.TuyaApi.Factory.DEFAULT_PARALLELISM;
+import static java.lang.Math.min;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+/**
+ * Creates apis on a bounded pool. If the caller gives up, apis which were
+ * already created are closed instead of leaked.
+ */
+final class ConcurrentCreation {
+
+    static interface Creator {
+        TuyaApi create(String deviceId, String localKey) throws IOException;
+    }
+
+    private final Creator creator;
+    private final int parallelism;
+    private final List<TuyaApi> created = new ArrayList<>();
+    private boolean abandoned = false;
+
+    private ConcurrentCreation(Creator creator, int parallelism) {
+        this.creator = creator;
+        this.parallelism = parallelism;
+    }
+
+    static Map<String, Result> create(Map<String, String> localKeys, Creator creator) throws IOException {
+        return create(localKeys, DEFAULT_PARALLELISM, creator);
+    }
+
+    static Map<String, Result> create(Map<String, String> localKeys, int parallelism, Creator creator)
+            throws IOException {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (localKeys.isEmpty()) {
+            return Map.of();
+        }
+        return new ConcurrentCreation(creator, parallelism).create(localKeys);
+    }
+
+    private Map<String, Result> create(Map<String, String> localKeys) throws IOException {
+        var executor = newFixedThreadPool(min(parallelism, localKeys.size()));
+        try {
+            var futures = new HashMap<String, Future<TuyaApi>>();
+            localKeys.forEach((deviceId, localKey) -> futures.put(deviceId,
+                    executor.submit(() -> created(creator.create(deviceId, localKey)))));
+
+            var results = new HashMap<String, Result>();
+            for (var future : futures.entrySet()) {
+                results.put(future.getKey(), result(future.getValue()));
+            }
+            return results;
+
+        } catch (IOException | RuntimeException e) {
+            abandon(e);
+            throw e;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private synchronized TuyaApi created(TuyaApi api) throws Exception {
+        if (abandoned) {
+            api.close();
+            throw new IOException("Creating devices was abandoned");
+        }
+        created.add(api);
+        return api;
+    }
+
+    private synchronized void abandon(Exception cause) {
+        abandoned = true;
+        for (var api : created) {
+            try {
+                api.close();
+
+            } catch (Exception e) {
+                cause.addSuppressed(e);
+            }
+        }
+        created.clear();
+    }
+
+    private static Result result(Future<TuyaApi> future) throws IOException {
+        try {
+            return Result.success(future.get());
+
+        } catch (ExecutionException e) {
+            return Result.failure(e.getCause() instanceof Exception cause ? cause : e);
+
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new IOException("Creating devices was interrupted", e);
+        }
+    }
+}
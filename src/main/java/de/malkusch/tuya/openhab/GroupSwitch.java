@@ -0,0 +1,81 @@
+package de.malkusch.tuya.openhab;
+
+import de.malkusch.tuya.GroupResult;
+import de.malkusch.tuya.GroupResult.Outcome;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Sends one command per device on a bounded pool, with staggered starts.
+ */
+final class GroupSwitch {
+
+    static interface Command {
+        void send(String deviceId) throws Exception;
+    }
+
+    private GroupSwitch() {
+    }
+
+    static GroupResult switchGroup(Collection<String> deviceIds, int parallelism, Duration stagger, Command command)
+            throws IOException {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (stagger.isNegative()) {
+            throw new IllegalArgumentException("Stagger must not be negative");
+        }
+        if (deviceIds.isEmpty()) {
+            return new GroupResult(Map.of());
+        }
+        var executor = newScheduledThreadPool(parallelism);
+        try {
+            var futures = new LinkedHashMap<String, Future<Outcome>>();
+            var delay = 0L;
+            for (var deviceId : deviceIds) {
+                futures.put(deviceId, executor.schedule(() -> send(deviceId, command), delay, NANOSECONDS));
+                delay += stagger.toNanos();
+            }
+
+            var outcomes = new LinkedHashMap<String, Outcome>();
+            for (var future : futures.entrySet()) {
+                outcomes.put(future.getKey(), future.getValue().get());
+            }
+            return new GroupResult(outcomes);
+
+        } catch (ExecutionException e) {
+            throw new IOException("Switching group failed", e.getCause());
+
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new IOException("Switching group was interrupted", e);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Outcome send(String deviceId, Command command) {
+        var start = nanoTime();
+        try {
+            command.send(deviceId);
+            return new Outcome(Duration.ofNanos(nanoTime() - start), Optional.empty());
+
+        } catch (Exception e) {
+            return new Outcome(Duration.ofNanos(nanoTime() - start), Optional.of(e));
+        }
+    }
+}
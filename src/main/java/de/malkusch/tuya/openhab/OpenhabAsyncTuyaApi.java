@@ -0,0 +1,56 @@
+package de.malkusch.tuya.openhab;
+
+import de.malkusch.tuya.AsyncTuyaApi;
+import de.malkusch.tuya.Datapoint;
+import de.malkusch.tuya.Metering;
+import de.malkusch.tuya.openhab.api.Api;
+import de.malkusch.tuya.openhab.api.Api.Power;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Objects.requireNonNull;
+
+public final class OpenhabAsyncTuyaApi implements AsyncTuyaApi {
+
+    private final Api openhab;
+
+    public OpenhabAsyncTuyaApi(Api openhab) {
+        this.openhab = requireNonNull(openhab);
+    }
+
+    @Override
+    public CompletableFuture<Void> turnOn() {
+        return openhab.sendAsync(Power.ON);
+    }
+
+    @Override
+    public CompletableFuture<Void> turnOff() {
+        return openhab.sendAsync(Power.OFF);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isOn() {
+        return openhab.stateAsync().thenApply(it -> it.power() == Power.ON);
+    }
+
+    @Override
+    public <T> Optional<T> get(Datapoint<T> datapoint) {
+        return openhab.device().datapoints().get(datapoint);
+    }
+
+    @Override
+    public Metering metering() {
+        return openhab.device().meter();
+    }
+
+    @Override
+    public boolean isOnline() {
+        return openhab.isConnected();
+    }
+
+    @Override
+    public void close() throws Exception {
+        openhab.close();
+    }
+}
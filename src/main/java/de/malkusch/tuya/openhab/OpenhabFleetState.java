@@ -0,0 +1,83 @@
+package de.malkusch.tuya.openhab;
+
+import de.malkusch.tuya.FleetState;
+import de.malkusch.tuya.openhab.api.Api;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+import static java.lang.System.Logger.Level.WARNING;
+import static java.util.Objects.requireNonNull;
+
+public final class OpenhabFleetState implements FleetState, Api.Observer {
+
+    private static final System.Logger log = System.getLogger(OpenhabFleetState.class.getName());
+    private final Map<String, DeviceState> states = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Map<String, DeviceState> snapshot() {
+        return new HashMap<>(states);
+    }
+
+    @Override
+    public Optional<DeviceState> state(String deviceId) {
+        return Optional.ofNullable(states.get(deviceId));
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(requireNonNull(listener));
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void stateChanged(String deviceId, State state) {
+        var on = state.power() == Power.ON;
+        update(deviceId, it -> new DeviceState(deviceId, on, state.time(), it.online()));
+    }
+
+    @Override
+    public void connectionChanged(String deviceId, boolean connected) {
+        update(deviceId, it -> new DeviceState(deviceId, it.on(), it.time(), connected));
+    }
+
+    @Override
+    public void closed(String deviceId, Api api) {
+        states.remove(deviceId);
+    }
+
+    private void update(String deviceId, UnaryOperator<DeviceState> update) {
+        DeviceState previous;
+        DeviceState updated;
+        do {
+            previous = states.get(deviceId);
+            updated = update.apply(previous == null ? new DeviceState(deviceId, false, Instant.MIN, false) : previous);
+        } while (previous == null ? states.putIfAbsent(deviceId, updated) != null
+                : !states.replace(deviceId, previous, updated));
+
+        if (previous != null && previous.on() == updated.on() && previous.online() == updated.online()) {
+            return;
+        }
+        for (var listener : listeners) {
+            try {
+                listener.changed(updated);
+
+            } catch (RuntimeException e) {
+                log.log(WARNING, "Fleet state listener failed", e);
+            }
+        }
+    }
+}
@@ -1,41 +1,171 @@
 package de.malkusch.tuya.openhab;
 
 import com.google.gson.Gson;
+import de.malkusch.tuya.AsyncTuyaApi;
+import de.malkusch.tuya.Datapoint;
+import de.malkusch.tuya.FleetState;
+import de.malkusch.tuya.GroupResult;
+import de.malkusch.tuya.Metering;
+import de.malkusch.tuya.Metrics;
 import de.malkusch.tuya.TuyaApi;
+import de.malkusch.tuya.TuyaApi.Factory.Builder.Options;
 import de.malkusch.tuya.openhab.api.Api;
 import de.malkusch.tuya.openhab.api.Api.Power;
 import de.malkusch.tuya.openhab.api.Device;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import static java.lang.System.Logger.Level.WARNING;
 import static java.util.Objects.requireNonNull;
 
 public final class OpenhabTuyaApi implements TuyaApi {
 
     public final static class Factory implements TuyaApi.Factory {
 
+        private static final System.Logger log = System.getLogger(OpenhabTuyaApi.class.getName());
         private final Api.Factory apiFactory;
         private final Device.Factory deviceFactory;
+        private final OpenhabFleetState fleetState = new OpenhabFleetState();
+        private final boolean verifyStaticAddresses;
+        private final ApiRegistry registry = new ApiRegistry(fleetState);
 
         public Factory(Duration deviceTimout, Duration discoveryTime, Duration expiration) {
             this(new Gson(), discoveryTime, deviceTimout, expiration);
         }
 
         public Factory(Gson gson, Duration discoveryTimeout, Duration timeout, Duration expiration) {
-            apiFactory = new Api.Factory(timeout, expiration);
+            apiFactory = new Api.Factory(timeout, expiration, registry, false, Optional.empty(), Metrics.NONE,
+                    Optional.empty());
             deviceFactory = new Device.Factory(gson, discoveryTimeout);
+            verifyStaticAddresses = false;
+        }
+
+        /**
+         * @see TuyaApi#buildFactory()
+         */
+        public Factory(Options options) {
+            apiFactory = new Api.Factory(options.deviceTimeout(), options.expiration(), registry,
+                    options.coalescing(), options.idempotence(), options.metrics(), reconnects(options));
+            deviceFactory = new Device.Factory(new Gson(), options);
+            verifyStaticAddresses = options.verifyStaticAddresses();
+        }
+
+        private static Optional<Api.BackgroundReconnects> reconnects(Options options) {
+            if (options.maxConcurrentReconnects() == 0) {
+                return Optional.empty();
+            }
+            return Optional.of(new Api.BackgroundReconnects(options.maxConcurrentReconnects(),
+                    options.initialReconnectBackoff(), options.maxReconnectBackoff()));
         }
 
         @Override
         public TuyaApi api(String deviceId, String localKey) throws IOException {
+            return new OpenhabTuyaApi(openhab(deviceId, localKey));
+        }
+
+        @Override
+        public AsyncTuyaApi asyncApi(String deviceId, String localKey) throws IOException {
+            return new OpenhabAsyncTuyaApi(openhab(deviceId, localKey));
+        }
+
+        @Override
+        public TuyaApi api(String deviceId, String localKey, String address, String protocolVersion)
+                throws IOException {
+
+            return new OpenhabTuyaApi(openhab(deviceId, localKey, address, protocolVersion));
+        }
+
+        @Override
+        public AsyncTuyaApi asyncApi(String deviceId, String localKey, String address, String protocolVersion)
+                throws IOException {
+
+            return new OpenhabAsyncTuyaApi(openhab(deviceId, localKey, address, protocolVersion));
+        }
+
+        /**
+         * Falls back to discovery if a broadcast already announced a
+         * different address.
+         */
+        private Api openhab(String deviceId, String localKey, String address, String protocolVersion)
+                throws IOException {
+
+            Device device;
+            try {
+                device = deviceFactory.device(deviceId, localKey, address, protocolVersion, verifyStaticAddresses);
+
+            } catch (IOException e) {
+                log.log(WARNING, "Ignoring static address: {0}", e.getMessage());
+                return openhab(deviceId, localKey);
+            }
+            return register(deviceId, apiFactory.api(device));
+        }
+
+        private Api openhab(String deviceId, String localKey) throws IOException {
             var device = deviceFactory.device(deviceId, localKey);
-            var api = apiFactory.api(device);
-            return new OpenhabTuyaApi(api);
+            try {
+                return register(deviceId, apiFactory.api(device));
+
+            } catch (IOException e) {
+                if (!device.isCached()) {
+                    throw e;
+                }
+                // Api.Factory closed the failed api together with its device
+                return register(deviceId, apiFactory.api(deviceFactory.discoveredDevice(deviceId, localKey)));
+            }
+        }
+
+        private Api register(String deviceId, Api api) {
+            return registry.register(deviceId, api);
+        }
+
+        @Override
+        public Map<String, Result> apis(Map<String, String> localKeys) throws IOException {
+            return ConcurrentCreation.create(localKeys, this::api);
+        }
+
+        @Override
+        public Map<String, Result> apis(Map<String, String> localKeys, int parallelism) throws IOException {
+            return ConcurrentCreation.create(localKeys, parallelism, this::api);
+        }
+
+        @Override
+        public GroupResult switchGroupOn(Collection<String> deviceIds, int parallelism, Duration stagger)
+                throws IOException {
+
+            return GroupSwitch.switchGroup(deviceIds, parallelism, stagger,
+                    deviceId -> registered(deviceId).send(Power.ON));
+        }
+
+        @Override
+        public GroupResult switchGroupOff(Collection<String> deviceIds, int parallelism, Duration stagger)
+                throws IOException {
+
+            return GroupSwitch.switchGroup(deviceIds, parallelism, stagger,
+                    deviceId -> registered(deviceId).send(Power.OFF));
+        }
+
+        private Api registered(String deviceId) throws IOException {
+            return registry.api(deviceId).orElseThrow(() -> new IOException("Unknown device " + deviceId));
+        }
+
+        @Override
+        public FleetState fleetState() {
+            return fleetState;
+        }
+
+        @Override
+        public long avoidedSends() {
+            return apiFactory.avoidedSends();
         }
 
         @Override
         public void close() throws Exception {
+            apiFactory.close();
             deviceFactory.close();
         }
     }
@@ -56,11 +186,36 @@ public final class OpenhabTuyaApi implements TuyaApi {
         openhab.send(Power.OFF);
     }
 
+    @Override
+    public CompletableFuture<Void> turnOnOptimistically() {
+        return openhab.sendOptimistic(Power.ON);
+    }
+
+    @Override
+    public CompletableFuture<Void> turnOffOptimistically() {
+        return openhab.sendOptimistic(Power.OFF);
+    }
+
     @Override
     public boolean isOn() throws IOException {
         return openhab.state().power() == Power.ON;
     }
 
+    @Override
+    public <T> Optional<T> get(Datapoint<T> datapoint) {
+        return openhab.device().datapoints().get(datapoint);
+    }
+
+    @Override
+    public void set(Datapoint.Command command) throws IOException {
+        openhab.set(command.values());
+    }
+
+    @Override
+    public Metering metering() {
+        return openhab.device().meter();
+    }
+
     @Override
     public boolean isOnline() {
         return openhab.isConnected();
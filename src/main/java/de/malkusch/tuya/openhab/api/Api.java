@@ -3,49 +3,146 @@ package de.malkusch.tuya.openhab.api;
 import static java.time.Instant.now;
 import static java.util.Objects.requireNonNull;
 
+import de.malkusch.tuya.Datapoint;
+import de.malkusch.tuya.Metrics;
+
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 
 public interface Api extends AutoCloseable {
 
-    public static final class Factory {
+    /**
+     * Reconnects offline devices in the background instead of on the calling
+     * thread. Calls to offline devices fail immediately.
+     *
+     * @param maxConcurrent
+     *            reconnects which may run at the same time across all devices
+     */
+    public static record BackgroundReconnects(int maxConcurrent, Duration initialBackoff, Duration maxBackoff) {
+
+        public BackgroundReconnects {
+            if (maxConcurrent < 1) {
+                throw new IllegalArgumentException("maxConcurrent must be positive");
+            }
+            if (initialBackoff.toMillis() < 1) {
+                throw new IllegalArgumentException("initialBackoff must be at least 1 ms");
+            }
+            if (maxBackoff.compareTo(initialBackoff) < 0) {
+                throw new IllegalArgumentException("maxBackoff must not be shorter than initialBackoff");
+            }
+        }
+    }
+
+    public static final class Factory implements AutoCloseable {
         private final Duration timeout;
         private final Duration expiration;
+        private final Observer observer;
+        private final boolean coalescing;
+        private final Optional<Duration> idempotence;
+        private final Metrics metrics;
+        private final Optional<ReconnectScheduler> reconnectScheduler;
+        private final LongAdder avoidedSends = new LongAdder();
 
         public Factory(Duration timeout, Duration expiration) {
+            this(timeout, expiration, Observer.NONE, false, Optional.empty(), Metrics.NONE, Optional.empty());
+        }
+
+        /**
+         * @param idempotence
+         *            skip sends if a state younger than this already has the
+         *            requested power
+         */
+        public Factory(Duration timeout, Duration expiration, Observer observer, boolean coalescing,
+                Optional<Duration> idempotence, Metrics metrics, Optional<BackgroundReconnects> reconnects) {
+
             this.timeout = requireNonNull(timeout);
             this.expiration = requireNonNull(expiration);
+            this.observer = requireNonNull(observer);
+            this.coalescing = coalescing;
+            this.idempotence = requireNonNull(idempotence);
+            this.metrics = requireNonNull(metrics);
+            this.reconnectScheduler = reconnects.map(ReconnectScheduler::new);
+        }
+
+        public long avoidedSends() {
+            return avoidedSends.sum();
         }
 
         public Api api(Device device) throws IOException {
-            var deviceApi = new DeviceApi(device, timeout, expiration);
-            var reconnectedApi = new ReconnectingApi(deviceApi, timeout);
+            var deviceApi = new DeviceApi(device, timeout, expiration, metrics);
+            Api reconnectedApi = new ReconnectingApi(deviceApi, timeout, metrics, reconnectScheduler);
+            if (coalescing) {
+                reconnectedApi = new CoalescingApi(reconnectedApi, timeout);
+            }
+            if (idempotence.isPresent()) {
+                reconnectedApi = new IdempotentApi(reconnectedApi, idempotence.get(), avoidedSends);
+            }
+            var observedApi = new ObservedApi(reconnectedApi, observer);
+
+            var api = observedApi;
+            try {
+                device.sync.enable(api);
 
-            var api = reconnectedApi;
-            device.sync.enable(api);
+            } catch (IOException | RuntimeException e) {
+                try {
+                    api.close();
 
+                } catch (Exception closeError) {
+                    e.addSuppressed(closeError);
+                }
+                throw e;
+            }
             return api;
         }
+
+        @Override
+        public void close() {
+            reconnectScheduler.ifPresent(ReconnectScheduler::close);
+        }
+    }
+
+    /**
+     * Receives every state and connection update of the created apis. It is
+     * called from the device's event loop and must not block.
+     */
+    public static interface Observer {
+
+        static final Observer NONE = new Observer() {
+        };
+
+        default void stateChanged(String deviceId, State state) {
+        }
+
+        default void connectionChanged(String deviceId, boolean connected) {
+        }
+
+        /**
+         * @param api
+         *            the closed instance, which may already be replaced by
+         *            another api of the same device
+         */
+        default void closed(String deviceId, Api api) {
+        }
     }
 
     static enum Power {
         ON, OFF;
 
         Map<Integer, Object> command() {
-            return Map.of(1, this == Power.ON);
+            return Map.of(Datapoint.SWITCH.id(), Datapoint.SWITCH.encode(this == Power.ON));
         }
     }
 
     static record State(Power power, Instant time) {
         static Optional<State> fromDeviceStatus(Map<Integer, Object> deviceStatus) {
-            if (deviceStatus.get(1) instanceof Boolean on) {
-                return Optional.of(new State(on ? Power.ON : Power.OFF, now()));
-            }
-            return Optional.empty();
+            return Datapoint.SWITCH.decode(deviceStatus.get(Datapoint.SWITCH.id()))
+                    .map(on -> new State(on ? Power.ON : Power.OFF, now()));
         }
     }
 
@@ -53,10 +150,36 @@ public interface Api extends AutoCloseable {
 
     State state() throws IOException;
 
+    /**
+     * The returned future completes from the device's event loop. Use the
+     * {@code *Async} variants for dependent stages which might block.
+     */
+    CompletableFuture<State> stateAsync();
+
     void syncState(State state);
 
     void send(Power power) throws IOException;
 
+    /**
+     * Completes like {@link #send(Power)}: with the next state the device
+     * reports, exceptionally if that state has a different power.
+     */
+    CompletableFuture<Void> sendAsync(Power power);
+
+    /**
+     * Updates the cached state right away and sends the command without
+     * waiting for the device. The returned future completes from the
+     * device's event loop once the device confirmed the state, or
+     * exceptionally if it reported a different state or didn't answer.
+     */
+    CompletableFuture<Void> sendOptimistic(Power power);
+
+    /**
+     * Sends all datapoints in one frame and waits until the device reported
+     * them.
+     */
+    void set(Map<Integer, Object> datapoints) throws IOException;
+
     void syncConnected(boolean connected);
 
     boolean isConnected();
@@ -1,55 +1,140 @@
 package de.malkusch.tuya.openhab.api;
 
+import de.malkusch.tuya.openhab.api.Api.State;
 import org.smarthomej.binding.tuya.internal.local.DeviceStatusListener;
 
 import java.io.IOException;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static de.malkusch.tuya.openhab.api.Api.State.fromDeviceStatus;
 import static java.lang.System.Logger.Level.DEBUG;
-import static java.lang.Thread.currentThread;
+import static java.lang.System.nanoTime;
 
 final class ApiSync implements DeviceStatusListener {
 
     private static final System.Logger log = System.getLogger(ApiSync.class.getName());
     private volatile Api api;
+    final DatapointCache datapoints = new DatapointCache();
+    final EnergyMeter meter;
+    private volatile long lastTraffic = nanoTime();
+    private final String deviceId;
+    private final CaptureWriter capture;
+    private volatile boolean closed = false;
+
+    ApiSync() {
+        this(0);
+    }
+
+    ApiSync(int meterCapacity) {
+        this(meterCapacity, null, Optional.empty());
+    }
+
+    ApiSync(int meterCapacity, String deviceId, Optional<CaptureWriter> capture) {
+        meter = new EnergyMeter(meterCapacity);
+        this.deviceId = deviceId;
+        this.capture = capture.orElse(null);
+    }
 
     @Override
     public void processDeviceStatus(Map<Integer, Object> deviceStatus) {
         log.log(DEBUG, "Received device status: {0}", deviceStatus);
-        waitUntilEnabled();
-        fromDeviceStatus(deviceStatus).ifPresent(api::syncState);
+        if (closed) {
+            return;
+        }
+        if (capture != null) {
+            capture.status(deviceId, deviceStatus);
+        }
+        lastTraffic = nanoTime();
+        datapoints.merge(deviceStatus);
+        meter.record(deviceStatus);
+        fromDeviceStatus(deviceStatus).ifPresent(state -> {
+            var api = enabledApi(() -> pendingState = state);
+            if (api != null) {
+                api.syncState(state);
+            }
+        });
     }
 
     @Override
     public void connectionStatus(boolean status) {
         log.log(DEBUG, "Received connection status: {0}", status);
-        waitUntilEnabled();
-        api.syncConnected(status);
+        if (closed) {
+            return;
+        }
+        if (capture != null) {
+            capture.connection(deviceId, status);
+        }
+        if (status) {
+            lastTraffic = nanoTime();
+        }
+        var api = enabledApi(() -> pendingConnection = status);
+        if (api != null) {
+            api.syncConnected(status);
+        }
     }
 
-    private final CountDownLatch enableLatch = new CountDownLatch(1);
-
-    void enable(Api api) throws IOException {
-        log.log(DEBUG, "Enabling");
-        this.api = api;
-        enableLatch.countDown();
-
-        api.enable();
+    /**
+     * @return {@link System#nanoTime()} of the last message from the device
+     */
+    long lastTraffic() {
+        return lastTraffic;
     }
 
-    private void waitUntilEnabled() {
+    /**
+     * Callbacks come from the event loop, which is shared with other devices.
+     * Before the api is enabled they only keep the latest update, which
+     * {@link #enable(Api)} replays.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private State pendingState;
+    private Boolean pendingConnection;
+
+    private Api enabledApi(Runnable otherwise) {
+        var api = this.api;
+        if (api != null) {
+            return api;
+        }
+        lock.lock();
         try {
+            api = this.api;
             if (api == null) {
-                log.log(DEBUG, "Wait until enabled");
-                enableLatch.await();
-                log.log(DEBUG, "Enabled");
+                log.log(DEBUG, "Deferring update until enabled");
+                otherwise.run();
             }
+            return api;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        } catch (InterruptedException e) {
-            currentThread().interrupt();
-            throw new RuntimeException("Initialization was interrupted", e);
+    void enable(Api api) throws IOException {
+        log.log(DEBUG, "Enabling");
+        lock.lock();
+        try {
+            if (pendingConnection != null) {
+                api.syncConnected(pendingConnection);
+            }
+            if (pendingState != null) {
+                api.syncState(pendingState);
+            }
+            pendingConnection = null;
+            pendingState = null;
+            this.api = api;
+        } finally {
+            lock.unlock();
         }
+
+        api.enable();
+    }
+
+    /**
+     * Drops all further callbacks. A disposed connection may still report
+     * from the event loop, which must not reach a replacing api.
+     */
+    void close() {
+        log.log(DEBUG, "Closing");
+        closed = true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,128 @@
+package de.malkusch.tuya.openhab.api;
+
+import org.smarthomej.binding.tuya.internal.local.DeviceStatusListener;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static de.malkusch.tuya.openhab.api.CaptureWriter.BOOLEAN;
+import static de.malkusch.tuya.openhab.api.CaptureWriter.CONNECTION;
+import static de.malkusch.tuya.openhab.api.CaptureWriter.DEVICE;
+import static de.malkusch.tuya.openhab.api.CaptureWriter.MAGIC;
+import static de.malkusch.tuya.openhab.api.CaptureWriter.NUMBER;
+import static de.malkusch.tuya.openhab.api.CaptureWriter.STATUS;
+import static de.malkusch.tuya.openhab.api.CaptureWriter.STRING;
+import static de.malkusch.tuya.openhab.api.CaptureWriter.VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads a log of {@link CaptureWriter}.
+ *
+ * The records are decoded once into memory, so they can be replayed at full
+ * speed, e.g. into {@link ApiSync}s for benchmarks and regression tests.
+ *
+ * This is deliberately package private: it replays into the binding's
+ * {@link DeviceStatusListener}, which isn't part of the public API. The
+ * benchmarks module and the tests share this package for that reason.
+ */
+final class CaptureReader {
+
+    static sealed interface Event permits Connection, Status {
+        String deviceId();
+
+        long nanos();
+    }
+
+    static record Connection(String deviceId, long nanos, boolean connected) implements Event {
+    }
+
+    static record Status(String deviceId, long nanos, Map<Integer, Object> deviceStatus) implements Event {
+    }
+
+    private CaptureReader() {
+    }
+
+    static List<Event> read(Path path) throws IOException {
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IOException("Unsupported capture " + path);
+            }
+            buffer.getLong();
+
+            var devices = new HashMap<Integer, String>();
+            var events = new ArrayList<Event>();
+            while (buffer.hasRemaining()) {
+                var type = buffer.get();
+                switch (type) {
+                case DEVICE -> devices.put(unsignedShort(buffer), string(buffer));
+                case CONNECTION -> {
+                    var nanos = buffer.getLong();
+                    var deviceId = devices.get(unsignedShort(buffer));
+                    events.add(new Connection(deviceId, nanos, buffer.get() == 1));
+                }
+                case STATUS -> {
+                    var nanos = buffer.getLong();
+                    var deviceId = devices.get(unsignedShort(buffer));
+                    var count = unsignedShort(buffer);
+                    var deviceStatus = new HashMap<Integer, Object>(count * 2);
+                    for (int i = 0; i < count; i++) {
+                        deviceStatus.put(unsignedShort(buffer), value(buffer));
+                    }
+                    events.add(new Status(deviceId, nanos, deviceStatus));
+                }
+                default -> throw new IOException("Unknown capture record " + type);
+                }
+            }
+            return events;
+
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Capture " + path + " is truncated", e);
+        }
+    }
+
+    /**
+     * Feeds the events in order and without delays into the listeners.
+     *
+     * @return the number of replayed events
+     */
+    static int replay(List<Event> events, Function<String, DeviceStatusListener> listeners) {
+        for (var event : events) {
+            var listener = listeners.apply(event.deviceId());
+            if (event instanceof Status status) {
+                listener.processDeviceStatus(status.deviceStatus());
+            } else if (event instanceof Connection connection) {
+                listener.connectionStatus(connection.connected());
+            }
+        }
+        return events.size();
+    }
+
+    private static Object value(ByteBuffer buffer) throws IOException {
+        var type = buffer.get();
+        return switch (type) {
+        case BOOLEAN -> buffer.get() == 1;
+        case NUMBER -> buffer.getDouble();
+        case STRING -> string(buffer);
+        default -> throw new IOException("Unknown capture value " + type);
+        };
+    }
+
+    private static String string(ByteBuffer buffer) {
+        var bytes = new byte[unsignedShort(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int unsignedShort(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort());
+    }
+}
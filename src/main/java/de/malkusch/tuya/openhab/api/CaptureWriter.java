@@ -0,0 +1,269 @@
+package de.malkusch.tuya.openhab.api;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Streams the decoded status and connection messages of every device into a
+ * compact binary log. Raw frames are neither seen nor captured, so a capture
+ * can't reproduce decoding or protocol errors.
+ *
+ * Callers append into one of two preallocated buffers. A background thread
+ * swaps them and writes the full one, so callers never wait for disk I/O. It
+ * swaps periodically, or earlier once the active buffer is half full.
+ * Records which don't fit into the buffer or exceed a field's range are
+ * dropped and counted.
+ *
+ * The file starts with the magic {@code TCAP}, a version byte and the start
+ * time in epoch milliseconds. Records start with a type byte. All shorts are
+ * unsigned:
+ *
+ * <ul>
+ * <li>{@code DEVICE}: short index, short length, UTF-8 device id</li>
+ * <li>{@code CONNECTION}: long nanos since start, short index, byte
+ * connected</li>
+ * <li>{@code STATUS}: long nanos since start, short index, short count and
+ * for each datapoint a short id, a type byte and the value</li>
+ * </ul>
+ *
+ * @see CaptureReader
+ */
+final class CaptureWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x54434150;
+    static final byte VERSION = 1;
+
+    static final byte DEVICE = 0;
+    static final byte CONNECTION = 1;
+    static final byte STATUS = 2;
+
+    static final byte BOOLEAN = 0;
+    static final byte NUMBER = 1;
+    static final byte STRING = 2;
+
+    static final int MAX_UNSIGNED_SHORT = 0xFFFF;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    private static final System.Logger log = System.getLogger(CaptureWriter.class.getName());
+    private final FileChannel file;
+    private final long start = nanoTime();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeup = lock.newCondition();
+    private final Map<String, Integer> devices = new HashMap<>();
+    private final long flushIntervalMillis;
+    private final int highWaterMark;
+    private ByteBuffer active;
+    private ByteBuffer flushing;
+    private long dropped = 0;
+    private boolean closed = false;
+    private final Thread writer;
+
+    CaptureWriter(Path path) throws IOException {
+        this(path, BUFFER_SIZE, FLUSH_INTERVAL_MILLIS);
+    }
+
+    CaptureWriter(Path path, int bufferSize, long flushIntervalMillis) throws IOException {
+        this.flushIntervalMillis = flushIntervalMillis;
+        highWaterMark = bufferSize / 2;
+        active = ByteBuffer.allocateDirect(bufferSize);
+        flushing = ByteBuffer.allocateDirect(bufferSize);
+        file = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+        active.putInt(MAGIC).put(VERSION).putLong(currentTimeMillis());
+        writer = new Thread(this::writeLoop, "tuya-capture");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    void connection(String deviceId, boolean connected) {
+        var time = nanoTime() - start;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            active.mark();
+            var created = !devices.containsKey(deviceId);
+            try {
+                var index = index(deviceId);
+                active.put(CONNECTION).putLong(time);
+                putUnsignedShort(index);
+                active.put((byte) (connected ? 1 : 0));
+                wakeupAboveHighWaterMark();
+
+            } catch (BufferOverflowException | IllegalArgumentException e) {
+                drop(deviceId, created);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void status(String deviceId, Map<Integer, Object> deviceStatus) {
+        var time = nanoTime() - start;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            active.mark();
+            var created = !devices.containsKey(deviceId);
+            try {
+                var index = index(deviceId);
+                active.put(STATUS).putLong(time);
+                putUnsignedShort(index);
+                putUnsignedShort(deviceStatus.size());
+                for (var datapoint : deviceStatus.entrySet()) {
+                    putUnsignedShort(datapoint.getKey());
+                    var value = datapoint.getValue();
+                    if (value instanceof Boolean bool) {
+                        active.put(BOOLEAN).put((byte) (bool ? 1 : 0));
+                    } else if (value instanceof Number number) {
+                        active.put(NUMBER).putDouble(number.doubleValue());
+                    } else {
+                        active.put(STRING);
+                        putString(String.valueOf(value));
+                    }
+                }
+                wakeupAboveHighWaterMark();
+
+            } catch (BufferOverflowException | IllegalArgumentException e) {
+                drop(deviceId, created);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int index(String deviceId) {
+        var index = devices.get(deviceId);
+        if (index != null) {
+            return index;
+        }
+        index = devices.size();
+        devices.put(deviceId, index);
+        active.put(DEVICE);
+        putUnsignedShort(index);
+        putString(deviceId);
+        return index;
+    }
+
+    private void putString(String value) {
+        var bytes = value.getBytes(UTF_8);
+        putUnsignedShort(bytes.length);
+        active.put(bytes);
+    }
+
+    private void putUnsignedShort(int value) {
+        if (value < 0 || value > MAX_UNSIGNED_SHORT) {
+            throw new IllegalArgumentException(value + " exceeds an unsigned short");
+        }
+        active.putShort((short) value);
+    }
+
+    private void wakeupAboveHighWaterMark() {
+        if (active.position() >= highWaterMark) {
+            wakeup.signal();
+        }
+    }
+
+    private void drop(String deviceId, boolean created) {
+        active.reset();
+        if (created) {
+            devices.remove(deviceId);
+        }
+        dropped++;
+    }
+
+    /**
+     * @return the number of records which were not captured
+     */
+    long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer full;
+            boolean last;
+            lock.lock();
+            try {
+                if (!closed && active.position() < highWaterMark) {
+                    wakeup.await(flushIntervalMillis, MILLISECONDS);
+                }
+                last = closed;
+                full = active;
+                active = flushing;
+                flushing = full;
+
+            } catch (InterruptedException e) {
+                return;
+
+            } finally {
+                lock.unlock();
+            }
+            try {
+                full.flip();
+                while (full.hasRemaining()) {
+                    file.write(full);
+                }
+
+            } catch (IOException e) {
+                log.log(WARNING, "Writing capture failed", e);
+
+            } finally {
+                full.clear();
+            }
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            wakeup.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+        }
+        file.close();
+        if (dropped > 0) {
+            log.log(WARNING, "Capture dropped {0} records", dropped);
+        } else {
+            log.log(DEBUG, "Capture closed");
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package de.malkusch.tuya.openhab.api;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.Thread.currentThread;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Collapses commands which arrive while another command is in flight.
+ *
+ * Only the latest requested power of such a burst is sent, and all its
+ * asynchronous callers complete with that single confirmation. Blocking
+ * callers wait for the same confirmation, but fail if the burst ended with a
+ * different power than they requested.
+ */
+final class CoalescingApi implements Api {
+
+    private static final System.Logger log = System.getLogger(CoalescingApi.class.getName());
+    private final Api api;
+    private final Duration timeout;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private static final class Batch {
+        private volatile Power power;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Batch(Power power) {
+            this.power = power;
+        }
+    }
+
+    private Batch pending;
+    private boolean sending = false;
+
+    CoalescingApi(Api api, Duration timeout) {
+        this.api = requireNonNull(api);
+        this.timeout = requireNonNull(timeout);
+    }
+
+    @Override
+    public void enable() throws IOException {
+        api.enable();
+    }
+
+    @Override
+    public State state() throws IOException {
+        return api.state();
+    }
+
+    @Override
+    public CompletableFuture<State> stateAsync() {
+        return api.stateAsync();
+    }
+
+    @Override
+    public void syncState(State state) {
+        api.syncState(state);
+    }
+
+    @Override
+    public void send(Power power) throws IOException {
+        var batch = enqueue(power);
+        try {
+            batch.future.get(timeout.toMillis(), MILLISECONDS);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Update power failed", e.getCause());
+
+        } catch (TimeoutException e) {
+            throw new IOException("Waiting for coalesced command timed out after " + timeout.toMillis() + " ms");
+
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new IOException("Waiting for coalesced command was interrupted", e);
+        }
+        var sent = batch.power;
+        if (sent != power) {
+            throw new IOException("Update power " + power + " was overridden by " + sent);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(Power power) {
+        return enqueue(power).future;
+    }
+
+    /**
+     * The power of the returned batch is final once its future completed.
+     */
+    private Batch enqueue(Power power) {
+        Batch batch;
+        boolean flush;
+        lock.lock();
+        try {
+            if (pending == null) {
+                pending = new Batch(power);
+            } else {
+                log.log(DEBUG, "Coalescing {0} into pending {1}", power, pending.power);
+                pending.power = power;
+            }
+            batch = pending;
+            flush = !sending;
+            sending = true;
+        } finally {
+            lock.unlock();
+        }
+        if (flush) {
+            flush(null);
+        }
+        return batch;
+    }
+
+    private void flush(Power confirmed) {
+        Batch batch;
+        lock.lock();
+        try {
+            batch = pending;
+            pending = null;
+            if (batch == null) {
+                sending = false;
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        var power = batch.power;
+        if (power == confirmed) {
+            log.log(DEBUG, "{0} was already confirmed", power);
+            batch.future.complete(null);
+            flush(confirmed);
+            return;
+        }
+        api.sendAsync(power).whenComplete((result, error) -> {
+            if (error == null) {
+                batch.future.complete(null);
+                flush(power);
+            } else {
+                batch.future.completeExceptionally(unwrap(error));
+                flush(null);
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Optimistic sends aren't coalesced, the cached state already reflects
+     * the latest command.
+     */
+    @Override
+    public CompletableFuture<Void> sendOptimistic(Power power) {
+        return api.sendOptimistic(power);
+    }
+
+    @Override
+    public void set(Map<Integer, Object> datapoints) throws IOException {
+        api.set(datapoints);
+    }
+
+    @Override
+    public void syncConnected(boolean connected) {
+        api.syncConnected(connected);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return api.isConnected();
+    }
+
+    @Override
+    public Device device() {
+        return api.device();
+    }
+
+    @Override
+    public void close() throws Exception {
+        api.close();
+    }
+}
@@ -0,0 +1,109 @@
+package de.malkusch.tuya.openhab.api;
+
+import de.malkusch.tuya.Datapoint;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.Thread.currentThread;
+import static java.time.Instant.now;
+
+/**
+ * Last received value of every datapoint of one device.
+ *
+ * Every received status gets the next sequence number, so waiting for a
+ * value doesn't depend on the wall clock.
+ */
+public final class DatapointCache {
+
+    public static record Value(Object raw, Instant time) {
+    }
+
+    private static record Received(Value value, long sequence) {
+    }
+
+    private final Map<Integer, Received> values = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private volatile long sequence = 0;
+
+    void merge(Map<Integer, Object> deviceStatus) {
+        var time = now();
+        lock.lock();
+        try {
+            var sequence = ++this.sequence;
+            deviceStatus.forEach((id, raw) -> {
+                if (raw != null) {
+                    values.put(id, new Received(new Value(raw, time), sequence));
+                }
+            });
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <T> Optional<T> get(Datapoint<T> datapoint) {
+        return value(datapoint.id()).flatMap(it -> datapoint.decode(it.raw()));
+    }
+
+    public Optional<Value> value(int id) {
+        return Optional.ofNullable(values.get(id)).map(Received::value);
+    }
+
+    /**
+     * The sequence number of the last received status.
+     */
+    long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Waits until statuses received after the given sequence number contain
+     * the expected values.
+     */
+    void awaitValues(Map<Integer, Object> expected, long since, Duration timeout) throws IOException {
+        lock.lock();
+        try {
+            var remaining = timeout.toNanos();
+            while (!contains(expected, since)) {
+                if (remaining <= 0) {
+                    throw new IOException("Update datapoints didn't change the state");
+                }
+                try {
+                    remaining = changed.awaitNanos(remaining);
+
+                } catch (InterruptedException e) {
+                    currentThread().interrupt();
+                    throw new IOException("Waiting for datapoints was interrupted", e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean contains(Map<Integer, Object> expected, long since) {
+        for (var entry : expected.entrySet()) {
+            var received = values.get(entry.getKey());
+            if (received == null || received.sequence() <= since
+                    || !matches(entry.getValue(), received.value().raw())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(Object expected, Object raw) {
+        if (expected instanceof Number number && raw instanceof Number received) {
+            return number.doubleValue() == received.doubleValue();
+        }
+        return expected.equals(raw);
+    }
+}
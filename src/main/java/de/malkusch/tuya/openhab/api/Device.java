@@ -1,121 +1,188 @@
 package de.malkusch.tuya.openhab.api;
 
 import com.google.gson.Gson;
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.TuyaApi.Factory.Builder.Options;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import org.smarthomej.binding.tuya.internal.local.DeviceInfoSubscriber;
 import org.smarthomej.binding.tuya.internal.local.TuyaDevice;
-import org.smarthomej.binding.tuya.internal.local.UdpDiscoveryListener;
-import org.smarthomej.binding.tuya.internal.local.dto.DeviceInfo;
 
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.concurrent.CountDownLatch;
+import java.time.Instant;
+import java.util.Optional;
 
-import static java.lang.System.Logger.Level.DEBUG;
-import static java.lang.Thread.currentThread;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public final class Device extends TuyaDevice implements AutoCloseable {
 
-    private static final System.Logger log = System.getLogger(Device.class.getName());
     final ApiSync sync;
-    private final InetAddress address;
+    private final HealthMonitor health;
     final String id;
+    private volatile boolean cached = false;
 
-    private Device(Gson gson, ApiSync sync, EventLoopGroup eventLoopGroup, String deviceId, byte[] deviceKey,
-                   String address, String protocolVersion) throws UnknownHostException {
+    Device(Gson gson, ApiSync sync, EventLoopGroup eventLoopGroup, HealthMonitor health, String deviceId,
+            byte[] deviceKey, String address, String protocolVersion) {
 
         super(gson, sync, eventLoopGroup, deviceId, deviceKey, address, protocolVersion);
 
         this.sync = sync;
         this.id = deviceId;
-        this.address = InetAddress.getByName(address);
+        this.health = requireNonNull(health);
     }
 
+    /**
+     * @return true if the address came from the discovery cache and wasn't
+     *         confirmed by a broadcast in this run
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    public DatapointCache datapoints() {
+        return sync.datapoints;
+    }
+
+    public EnergyMeter meter() {
+        return sync.meter;
+    }
+
+    /**
+     * Reports the device as disconnected if it doesn't answer within the
+     * timeout. This doesn't block.
+     */
     public void checkConnected(Duration timeout) {
-        try {
-            if (!address.isReachable((int) timeout.toMillis())) {
-                log.log(DEBUG, "Disconnecting");
-                sync.connectionStatus(false);
-            }
-        } catch (IOException e) {
-            log.log(DEBUG, "Disconnecting");
-            sync.connectionStatus(false);
-        }
+        health.probe(this, timeout);
     }
 
     static public final class Factory implements AutoCloseable {
 
         private final Gson gson;
-        private final EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+        private final EventLoopGroup eventLoopGroup;
+        private final boolean ownsEventLoopGroup;
+        private final EventLoopGroup discoveryEventLoopGroup = new NioEventLoopGroup(1);
         private final Duration timeout;
+        private final Discovery discovery;
+        private final HealthMonitor health;
+        private final int meterCapacity;
+        private final Optional<CaptureWriter> capture;
 
         public Factory(Gson gson, Duration timeout) {
-            this.gson = requireNonNull(gson);
-            this.timeout = requireNonNull(timeout);
+            this(gson, timeout, 0, Metrics.NONE, Optional.empty(), Optional.empty(), 0, Optional.empty());
         }
 
-        public Device device(String deviceId, String localKey) throws IOException {
-            var discovery = new Discovery();
-            var deviceInfo = discovery.discover(deviceId);
+        /**
+         * Discovery runs on its own single threaded event loop, so broadcasts
+         * don't compete with device traffic.
+         *
+         * @see de.malkusch.tuya.TuyaApi#buildFactory()
+         */
+        public Factory(Gson gson, Options options) {
+            this(gson, options.discoveryTimeout(), options.meterCapacity(), options.metrics(),
+                    options.discoveryCache(), options.eventLoopGroup(), options.eventLoopThreads(), options.capture());
+        }
 
-            var sync = new ApiSync();
-            var device = new Device(gson, sync, eventLoopGroup, deviceId, localKey.getBytes(UTF_8), deviceInfo.ip,
-                    deviceInfo.protocolVersion);
+        /**
+         * @param eventLoopGroup
+         *            event loop group for device connections which the caller
+         *            owns and shuts down
+         * @param eventLoopThreads
+         *            threads of the own event loop group if none is given, 0
+         *            uses Netty's default
+         */
+        private Factory(Gson gson, Duration timeout, int meterCapacity, Metrics metrics,
+                Optional<Path> discoveryCache, Optional<EventLoopGroup> eventLoopGroup, int eventLoopThreads,
+                Optional<Path> capture) {
 
-            return device;
+            this.gson = requireNonNull(gson);
+            this.timeout = requireNonNull(timeout);
+            this.meterCapacity = meterCapacity;
+            this.capture = capture.map(Factory::captureWriter);
+            this.ownsEventLoopGroup = eventLoopGroup.isEmpty();
+            this.eventLoopGroup = eventLoopGroup.orElseGet(() -> new NioEventLoopGroup(eventLoopThreads));
+            this.health = new HealthMonitor(this.eventLoopGroup);
+            this.discovery = new Discovery(discoveryEventLoopGroup, timeout, metrics,
+                    discoveryCache.map(DiscoveryCache::new));
         }
 
-        private class Discovery implements DeviceInfoSubscriber {
+        private static CaptureWriter captureWriter(Path file) {
+            try {
+                return new CaptureWriter(file);
 
-            private static final System.Logger log = System.getLogger(Discovery.class.getName());
-            private volatile DeviceInfo deviceInfo;
-            private final CountDownLatch latch = new CountDownLatch(1);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Opening capture " + file + " failed", e);
+            }
+        }
 
-            @Override
-            public void deviceInfoChanged(DeviceInfo deviceInfo) {
-                log.log(DEBUG, "Discovered {0}", deviceInfo);
-                this.deviceInfo = deviceInfo;
-                latch.countDown();
+        /**
+         * Uses the discovery cache if the device wasn't discovered yet. Such a
+         * device {@link Device#isCached() is cached} and might have a stale
+         * address.
+         */
+        public Device device(String deviceId, String localKey) throws IOException {
+            var discovered = discovery.discovered(deviceId);
+            if (discovered.isPresent()) {
+                return device(deviceId, localKey, discovered.get());
+            }
+            var cached = discovery.cached(deviceId);
+            if (cached.isPresent()) {
+                var device = device(deviceId, localKey, cached.get());
+                device.cached = true;
+                return device;
             }
+            return discoveredDevice(deviceId, localKey);
+        }
 
-            public DeviceInfo discover(String deviceId) throws IOException {
-                var listener = new UdpDiscoveryListener(eventLoopGroup);
-                try {
-                    listener.registerListener(deviceId, this);
-                    try {
-                        latch.await(timeout.toMillis(), MILLISECONDS);
-
-                    } catch (InterruptedException e) {
-                        currentThread().interrupt();
-                        throw new IOException("Discovery was interrupted", e);
-                    }
-
-                    if (deviceInfo == null) {
-                        throw new IOException("Discovery timed out");
-                    }
-                    return deviceInfo;
-
-                } finally {
-                    listener.unregisterListener(this);
-                    listener.deactivate();
-                }
+        /**
+         * Ignores the discovery cache and waits for a broadcast.
+         */
+        public Device discoveredDevice(String deviceId, String localKey) throws IOException {
+            return device(deviceId, localKey, discovery.discover(deviceId));
+        }
+
+        /**
+         * Skips discovery.
+         *
+         * @param verify
+         *            log a warning if a discovery broadcast disagrees with the
+         *            given address
+         * @throws IOException
+         *             if verifying and a broadcast already disagreed
+         */
+        public Device device(String deviceId, String localKey, String address, String protocolVersion,
+                boolean verify) throws IOException {
+
+            if (verify) {
+                discovery.verify(deviceId, address, protocolVersion);
             }
+            return device(deviceId, localKey, new Discovery.Discovered(address, protocolVersion, Instant.now()));
+        }
+
+        private Device device(String deviceId, String localKey, Discovery.Discovered discovered) {
+            var sync = new ApiSync(meterCapacity, deviceId, capture);
+            return new Device(gson, sync, eventLoopGroup, health, deviceId, localKey.getBytes(UTF_8),
+                    discovered.ip(), discovered.protocolVersion());
         }
 
         @Override
         public void close() throws Exception {
-            eventLoopGroup.shutdownGracefully().await(timeout.toMillis());
+            discovery.close();
+            if (capture.isPresent()) {
+                capture.get().close();
+            }
+            discoveryEventLoopGroup.shutdownGracefully().await(timeout.toMillis());
+            if (ownsEventLoopGroup) {
+                eventLoopGroup.shutdownGracefully().await(timeout.toMillis());
+            }
         }
     }
 
     @Override
     public void close() throws Exception {
+        sync.close();
         dispose();
     }
 }
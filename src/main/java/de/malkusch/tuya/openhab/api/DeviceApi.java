@@ -1,83 +1,271 @@
 package de.malkusch.tuya.openhab.api;
 
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.Metrics.Operation;
+
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 
-import static java.lang.Math.max;
-import static java.lang.Math.min;
 import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
-import static java.time.Duration.between;
 import static java.time.Instant.now;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 final class DeviceApi implements Api {
 
     private static final System.Logger log = System.getLogger(DeviceApi.class.getName());
     private final Device device;
     private final Duration timeout;
-    private final Duration expiration;
-    private final Object lock = new Object();
+    private final long expiration;
+    private final Metrics metrics;
+    private final NanoClock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+
+    /**
+     * Serializes device round trips. Callbacks from the event loop never take
+     * it.
+     */
+    private final ReentrantLock commandLock = new ReentrantLock();
+
+    /**
+     * State and expiry are published together, so fresh reads need no lock.
+     * The version counts the states reported by the device.
+     */
+    private static record Snapshot(State state, long expiresAt, long version) {
+    }
 
-    private volatile State state = new State(Power.OFF, Instant.MIN);
+    private volatile Snapshot snapshot;
     private volatile boolean connected = false;
-    private volatile Instant expireAt = Instant.MIN;
 
-    DeviceApi(Device device, Duration timeout, Duration expiration) throws IOException {
+    DeviceApi(Device device, Duration timeout, Duration expiration, Metrics metrics) throws IOException {
+        this(device, timeout, expiration, metrics, NanoClock.SYSTEM);
+    }
+
+    DeviceApi(Device device, Duration timeout, Duration expiration, Metrics metrics, NanoClock clock) {
         this.device = device;
         this.timeout = timeout;
-        this.expiration = expiration;
+        this.expiration = expiration.toNanos();
+        this.metrics = metrics;
+        this.clock = clock;
+        this.snapshot = new Snapshot(new State(Power.OFF, Instant.MIN), clock.nanoTime(), 0);
     }
 
     @Override
     public void enable() throws IOException {
-        synchronized (lock) {
+        lock.lock();
+        try {
             waitForState();
             if (isExpired()) {
                 throw new IllegalStateException("State wasn't received");
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public State state() throws IOException {
-        synchronized (lock) {
+        var snapshot = this.snapshot;
+        if (!isExpired(snapshot)) {
+            metrics.stateCacheHit(device.id);
+            return snapshot.state;
+        }
+        lock.lock();
+        try {
             if (isExpired()) {
+                metrics.stateCacheMiss(device.id);
                 log.log(DEBUG, "Requesting expired state");
                 // device.refreshStatus();
                 device.requestStatus();
                 waitForState();
+            } else {
+                metrics.stateCacheHit(device.id);
             }
-            return state;
+            return this.snapshot.state;
+        } finally {
+            lock.unlock();
         }
     }
 
+    @Override
+    public CompletableFuture<State> stateAsync() {
+        var snapshot = this.snapshot;
+        if (!isExpired(snapshot)) {
+            metrics.stateCacheHit(device.id);
+            return completedFuture(snapshot.state);
+        }
+        metrics.stateCacheMiss(device.id);
+        log.log(DEBUG, "Requesting expired state asynchronously");
+        var future = nextState(it -> true);
+        device.requestStatus();
+        return future;
+    }
+
     @Override
     public void syncState(State state) {
-        synchronized (lock) {
-            this.state = state;
-            expireAt = state.time().plus(expiration);
-            lock.notifyAll();
+        lock.lock();
+        try {
+            snapshot = new Snapshot(state, clock.nanoTime() + expiration, snapshot.version + 1);
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (var waiter : waiters) {
+            if (waiter.condition.test(state)) {
+                waiter.future.complete(state);
+            }
         }
     }
 
     @Override
     public void send(Power power) throws IOException {
-        synchronized (lock) {
-            var command = command(power);
+        commandLock.lock();
+        try {
+            var command = power.command();
             log.log(DEBUG, "Update power {0}", command);
-            expire();
-            device.set(command);
-            waitForState();
+            var start = nanoTime();
+            var version = snapshot.version;
+            var success = false;
+            try {
+                device.set(command);
+                var state = awaitState(() -> snapshot.version <= version);
+                if (state.power() != power) {
+                    throw new IOException("Update power didn't change the state");
+                }
+                success = true;
+
+            } finally {
+                metrics.sent(device.id, nanoTime() - start, success);
+            }
+        } finally {
+            commandLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(Power power) {
+        var command = power.command();
+        log.log(DEBUG, "Update power asynchronously {0}", command);
+        var start = nanoTime();
+        var future = nextState(it -> true);
+        device.set(command);
+        return future.handle((state, error) -> {
+            metrics.sent(device.id, nanoTime() - start, error == null && state.power() == power);
+            if (error != null) {
+                throw new CompletionException(error);
+            }
             if (state.power() != power) {
-                throw new IOException("Update power didn't change the state");
+                throw new CompletionException(new IOException("Update power didn't change the state"));
             }
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> sendOptimistic(Power power) {
+        var command = power.command();
+        log.log(DEBUG, "Update power optimistically {0}", command);
+        var start = nanoTime();
+        CompletableFuture<State> confirmation;
+        Snapshot optimistic;
+        lock.lock();
+        try {
+            confirmation = nextState(it -> true);
+            optimistic = new Snapshot(new State(power, now()), clock.nanoTime() + expiration, snapshot.version);
+            snapshot = optimistic;
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
         }
+        device.set(command);
+        return confirmation.handle((state, error) -> {
+            var confirmed = error == null && state.power() == power;
+            metrics.sent(device.id, nanoTime() - start, confirmed);
+            if (confirmed) {
+                return null;
+            }
+            rollback(optimistic);
+            if (error != null) {
+                throw new CompletionException(error);
+            }
+            log.log(DEBUG, "Device reported {0} instead of {1}", state.power(), power);
+            throw new CompletionException(new IOException("Update power didn't change the state"));
+        });
     }
 
-    private static Map<Integer, Object> command(Power power) {
-        return Map.of(1, power == Power.ON);
+    /**
+     * Expires an unconfirmed optimistic state, unless the device reported a
+     * newer one in the meantime.
+     */
+    private void rollback(Snapshot optimistic) {
+        lock.lock();
+        try {
+            if (snapshot == optimistic) {
+                log.log(DEBUG, "Expiring unconfirmed state {0}", optimistic.state);
+                expire();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static record Waiter(Predicate<State> condition, CompletableFuture<State> future) {
+    }
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The timeout is cancelled once the state arrived, so completed waiters
+     * don't stay reachable until it would have fired.
+     */
+    private CompletableFuture<State> nextState(Predicate<State> condition) {
+        var future = new CompletableFuture<State>();
+        var waiter = new Waiter(condition, future);
+        waiters.add(waiter);
+        var result = new CompletableFuture<State>();
+        future.orTimeout(timeout.toMillis(), MILLISECONDS).whenComplete((state, error) -> {
+            waiters.remove(waiter);
+            if (error == null) {
+                result.complete(state);
+
+            } else if (error instanceof TimeoutException) {
+                metrics.timedOut(device.id, Operation.STATE);
+                result.completeExceptionally(
+                        new IOException("Waiting for state timed out after " + timeout.toMillis() + " ms"));
+
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void set(Map<Integer, Object> datapoints) throws IOException {
+        commandLock.lock();
+        try {
+            log.log(DEBUG, "Update datapoints {0}", datapoints);
+            var since = device.datapoints().sequence();
+            device.set(datapoints);
+            device.datapoints().awaitValues(datapoints, since, timeout);
+        } finally {
+            commandLock.unlock();
+        }
     }
 
     @Override
@@ -96,54 +284,62 @@ final class DeviceApi implements Api {
     }
 
     private void expire() {
-        expireAt = Instant.MIN;
+        lock.lock();
+        try {
+            snapshot = new Snapshot(snapshot.state, clock.nanoTime(), snapshot.version);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private boolean isExpired() {
-        var now = now();
-        return now.isAfter(expireAt) || now.equals(expireAt);
+        return isExpired(snapshot);
+    }
+
+    private boolean isExpired(Snapshot snapshot) {
+        return clock.nanoTime() - snapshot.expiresAt >= 0;
     }
 
     void waitForState() throws IOException {
-        var start = now();
-        var waitUntil = start.plus(timeout);
-        synchronized (lock) {
-            if (!isExpired()) {
-                return;
+        awaitState(this::isExpired);
+    }
+
+    /**
+     * Waits while the condition holds, without blocking readers of a fresh
+     * snapshot.
+     */
+    private State awaitState(BooleanSupplier waiting) throws IOException {
+        lock.lock();
+        try {
+            if (!waiting.getAsBoolean()) {
+                return snapshot.state;
             }
             log.log(DEBUG, "Waiting for state");
-            while (isExpired()) {
-
-                if (now().isAfter(waitUntil)) {
+            var start = nanoTime();
+            var remaining = timeout.toNanos();
+            while (waiting.getAsBoolean()) {
+                if (remaining <= 0) {
+                    metrics.timedOut(device.id, Operation.STATE);
                     throw new IOException(
-                            "Waiting for state timed out after " + between(start, now()).toMillis() + " ms");
+                            "Waiting for state timed out after " + NANOSECONDS.toMillis(nanoTime() - start) + " ms");
                 }
-                if (Thread.interrupted()) {
-                    currentThread().interrupt();
-                    throw new IOException("Waiting for state was interrupted");
-                }
-
                 try {
-                    var waitMillis = waitMillis(waitUntil);
-                    lock.wait(waitMillis);
+                    remaining = stateChanged.awaitNanos(remaining);
 
                 } catch (InterruptedException e) {
                     currentThread().interrupt();
                     throw new IOException("Waiting for state was interrupted", e);
                 }
             }
-            log.log(DEBUG, "Waited {0} ms", between(start, now()).toMillis());
+            var waited = nanoTime() - start;
+            metrics.stateWaited(device.id, waited);
+            log.log(DEBUG, "Waited {0} ms", NANOSECONDS.toMillis(waited));
+            return snapshot.state;
+        } finally {
+            lock.unlock();
         }
     }
 
-    private static final long MAX_WAIT_MILLIS = 200;
-    private static final long MIN_WAIT_MILLIS = 10;
-
-    private static long waitMillis(Instant waitUntil) {
-        var millisUntil = max(MIN_WAIT_MILLIS, between(now(), waitUntil).toMillis());
-        return min(MAX_WAIT_MILLIS, millisUntil);
-    }
-
     @Override
     public void close() throws Exception {
         device.close();
@@ -0,0 +1,166 @@
+package de.malkusch.tuya.openhab.api;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.Metrics.Operation;
+import io.netty.channel.EventLoopGroup;
+import org.smarthomej.binding.tuya.internal.local.DeviceInfoSubscriber;
+import org.smarthomej.binding.tuya.internal.local.UdpDiscoveryListener;
+import org.smarthomej.binding.tuya.internal.local.dto.DeviceInfo;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.time.Instant.now;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Factory scoped discovery registry.
+ *
+ * One {@link UdpDiscoveryListener} stays open for the lifetime of the factory.
+ * Every device which was looked up once stays subscribed, so later broadcasts
+ * keep its entry up to date and repeated lookups are answered from memory.
+ * An optional {@link DiscoveryCache} persists the entries across restarts.
+ */
+final class Discovery implements AutoCloseable {
+
+    static record Discovered(String ip, String protocolVersion, Instant lastSeen) {
+    }
+
+    private static final System.Logger log = System.getLogger(Discovery.class.getName());
+    private final UdpDiscoveryListener listener;
+    private final Duration timeout;
+    private final Metrics metrics;
+    private final Optional<DiscoveryCache> cache;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    Discovery(EventLoopGroup eventLoopGroup, Duration timeout, Metrics metrics, Optional<DiscoveryCache> cache) {
+        this.timeout = requireNonNull(timeout);
+        this.metrics = requireNonNull(metrics);
+        this.cache = requireNonNull(cache);
+        this.listener = new UdpDiscoveryListener(eventLoopGroup);
+    }
+
+    public Discovered discover(String deviceId) throws IOException {
+        return subscription(deviceId).await();
+    }
+
+    public Optional<Discovered> discovered(String deviceId) {
+        return Optional.ofNullable(subscriptions.get(deviceId)).map(it -> it.discovered);
+    }
+
+    /**
+     * Returns the entry of a previous run without waiting. The device gets
+     * subscribed, so a stale entry is corrected by the next broadcast.
+     */
+    public Optional<Discovered> cached(String deviceId) {
+        subscription(deviceId);
+        return cache.flatMap(it -> it.get(deviceId));
+    }
+
+    /**
+     * Logs a warning whenever a broadcast disagrees with the given address.
+     *
+     * @throws IOException
+     *             if a broadcast of this run already disagreed
+     */
+    public void verify(String deviceId, String ip, String protocolVersion) throws IOException {
+        var subscription = subscription(deviceId);
+        var expected = new Discovered(ip, protocolVersion, now());
+        var discovered = subscription.discovered;
+        if (discovered != null && !agree(expected, discovered)) {
+            throw new IOException(deviceId + " announced " + discovered.ip() + " with protocol "
+                    + discovered.protocolVersion() + ", but was configured with " + ip + " and protocol "
+                    + protocolVersion);
+        }
+        subscription.expected = expected;
+    }
+
+    private static boolean agree(Discovered expected, Discovered discovered) {
+        return expected.ip().equals(discovered.ip())
+                && expected.protocolVersion().equals(discovered.protocolVersion());
+    }
+
+    private Subscription subscription(String deviceId) {
+        var subscription = subscriptions.get(deviceId);
+        if (subscription != null) {
+            return subscription;
+        }
+        var created = new Subscription(deviceId);
+        subscription = subscriptions.putIfAbsent(deviceId, created);
+        if (subscription != null) {
+            return subscription;
+        }
+        log.log(DEBUG, "Subscribing {0}", deviceId);
+        listener.registerListener(deviceId, created);
+        return created;
+    }
+
+    private final class Subscription implements DeviceInfoSubscriber {
+
+        private final String deviceId;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Discovered discovered;
+        private volatile Discovered expected;
+
+        Subscription(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        @Override
+        public void deviceInfoChanged(DeviceInfo deviceInfo) {
+            log.log(DEBUG, "Discovered {0}: {1}", deviceId, deviceInfo);
+            var discovered = new Discovered(deviceInfo.ip, deviceInfo.protocolVersion, now());
+            this.discovered = discovered;
+            latch.countDown();
+            cache.ifPresent(it -> it.put(deviceId, discovered));
+            var expected = this.expected;
+            if (expected != null && !agree(expected, discovered)) {
+                log.log(WARNING, "{0} announced {1} with protocol {2}, but was configured with {3} and protocol {4}",
+                        deviceId, deviceInfo.ip, deviceInfo.protocolVersion, expected.ip(),
+                        expected.protocolVersion());
+            }
+        }
+
+        Discovered await() throws IOException {
+            var discovered = this.discovered;
+            if (discovered != null) {
+                return discovered;
+            }
+            var start = nanoTime();
+            try {
+                log.log(DEBUG, "Waiting for discovery of {0}", deviceId);
+                latch.await(timeout.toMillis(), MILLISECONDS);
+
+            } catch (InterruptedException e) {
+                currentThread().interrupt();
+                throw new IOException("Discovery was interrupted", e);
+            }
+
+            discovered = this.discovered;
+            if (discovered == null) {
+                metrics.timedOut(deviceId, Operation.DISCOVERY);
+                throw new IOException("Discovery timed out");
+            }
+            metrics.discovered(deviceId, nanoTime() - start);
+            return discovered;
+        }
+    }
+
+    @Override
+    public void close() {
+        subscriptions.values().forEach(listener::unregisterListener);
+        subscriptions.clear();
+        listener.deactivate();
+        cache.ifPresent(DiscoveryCache::close);
+    }
+}
@@ -0,0 +1,115 @@
+package de.malkusch.tuya.openhab.api;
+
+import de.malkusch.tuya.openhab.api.Discovery.Discovered;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.Thread.currentThread;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * On-disk copy of the discovery results.
+ *
+ * The file has one line per device: {@code deviceId ip protocolVersion
+ * lastSeenMillis}. It is read once on startup and rewritten in the background
+ * whenever a device shows up with a new address or protocol version.
+ */
+final class DiscoveryCache implements AutoCloseable {
+
+    private static final System.Logger log = System.getLogger(DiscoveryCache.class.getName());
+    private final Path file;
+    private final Map<String, Discovered> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ExecutorService writer = newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "tuya-discovery-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    DiscoveryCache(Path file) {
+        this.file = requireNonNull(file);
+        load();
+    }
+
+    Optional<Discovered> get(String deviceId) {
+        return Optional.ofNullable(entries.get(deviceId));
+    }
+
+    void put(String deviceId, Discovered discovered) {
+        var previous = entries.put(deviceId, discovered);
+        if (previous != null && previous.ip().equals(discovered.ip())
+                && previous.protocolVersion().equals(discovered.protocolVersion())) {
+            return;
+        }
+        if (dirty.compareAndSet(false, true)) {
+            writer.execute(this::write);
+        }
+    }
+
+    private void load() {
+        try {
+            for (var line : Files.readAllLines(file, UTF_8)) {
+                var fields = line.split(" ");
+                if (fields.length != 4) {
+                    log.log(WARNING, "Ignoring malformed discovery cache entry {0}", line);
+                    continue;
+                }
+                entries.put(fields[0],
+                        new Discovered(fields[1], fields[2], Instant.ofEpochMilli(Long.parseLong(fields[3]))));
+            }
+            log.log(DEBUG, "Loaded {0} cached devices", entries.size());
+
+        } catch (NoSuchFileException e) {
+            log.log(DEBUG, "No discovery cache at {0}", file);
+
+        } catch (IOException | NumberFormatException e) {
+            log.log(WARNING, "Ignoring unreadable discovery cache " + file, e);
+            entries.clear();
+        }
+    }
+
+    private void write() {
+        dirty.set(false);
+        var content = new StringBuilder();
+        entries.forEach((deviceId, discovered) -> content.append(deviceId).append(' ').append(discovered.ip())
+                .append(' ').append(discovered.protocolVersion()).append(' ')
+                .append(discovered.lastSeen().toEpochMilli()).append('\n'));
+        try {
+            var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, content, UTF_8);
+            Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            log.log(DEBUG, "Wrote {0} devices to the discovery cache", entries.size());
+
+        } catch (IOException e) {
+            log.log(WARNING, "Writing discovery cache " + file + " failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, SECONDS);
+
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+        }
+        write();
+    }
+}
@@ -0,0 +1,168 @@
+package de.malkusch.tuya.openhab.api;
+
+import de.malkusch.tuya.Datapoint;
+import de.malkusch.tuya.Metering;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.Math.floorMod;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Ring buffer of primitive metering samples.
+ */
+public final class EnergyMeter implements Metering {
+
+    private static final System.Logger log = System.getLogger(EnergyMeter.class.getName());
+    private static final double MILLIS_PER_HOUR = 3_600_000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] times;
+    private final double[] watts;
+    private final double[] amperes;
+    private final double[] volts;
+    private int next = 0;
+    private int size = 0;
+
+    private double lastWatts = 0;
+    private double lastAmperes = 0;
+    private double lastVolts = 0;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param capacity
+     *            0 keeps no history, only the stream is available
+     */
+    EnergyMeter(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        times = new long[capacity];
+        watts = new double[capacity];
+        amperes = new double[capacity];
+        volts = new double[capacity];
+    }
+
+    void record(Map<Integer, Object> deviceStatus) {
+        var power = deviceStatus.get(Datapoint.POWER.id());
+        var current = deviceStatus.get(Datapoint.CURRENT.id());
+        var voltage = deviceStatus.get(Datapoint.VOLTAGE.id());
+        if (!(power instanceof Number) && !(current instanceof Number) && !(voltage instanceof Number)) {
+            return;
+        }
+        var time = currentTimeMillis();
+        double w;
+        double a;
+        double v;
+        lock.lock();
+        try {
+            if (power instanceof Number value) {
+                lastWatts = value.doubleValue() / 10;
+            }
+            if (current instanceof Number value) {
+                lastAmperes = value.doubleValue() / 1000;
+            }
+            if (voltage instanceof Number value) {
+                lastVolts = value.doubleValue() / 10;
+            }
+            w = lastWatts;
+            a = lastAmperes;
+            v = lastVolts;
+            if (times.length > 0) {
+                times[next] = time;
+                watts[next] = w;
+                amperes[next] = a;
+                volts[next] = v;
+                next = (next + 1) % times.length;
+                size = min(size + 1, times.length);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (var listener : listeners) {
+            try {
+                listener.sample(time, w, a, v);
+
+            } catch (RuntimeException e) {
+                log.log(WARNING, "Metering listener failed", e);
+            }
+        }
+    }
+
+    @Override
+    public Aggregate aggregate(Duration window) {
+        var since = currentTimeMillis() - window.toMillis();
+        lock.lock();
+        try {
+            var samples = 0;
+            var sum = 0.0;
+            var minWatts = Double.POSITIVE_INFINITY;
+            var maxWatts = Double.NEGATIVE_INFINITY;
+            var wattMillis = 0.0;
+            var newerTime = 0L;
+            var newerWatts = 0.0;
+            for (var i = 0; i < size; i++) {
+                var index = floorMod(next - 1 - i, times.length);
+                if (times[index] < since) {
+                    break;
+                }
+                samples++;
+                sum += watts[index];
+                minWatts = min(minWatts, watts[index]);
+                maxWatts = max(maxWatts, watts[index]);
+                if (i > 0) {
+                    wattMillis += (watts[index] + newerWatts) / 2 * (newerTime - times[index]);
+                }
+                newerTime = times[index];
+                newerWatts = watts[index];
+            }
+            if (samples == 0) {
+                return new Aggregate(0, 0, 0, 0, 0);
+            }
+            return new Aggregate(samples, sum / samples, minWatts, maxWatts, wattMillis / MILLIS_PER_HOUR / 1000);
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int history(long[] epochMillis, double[] watts, double[] amperes, double[] volts) {
+        lock.lock();
+        try {
+            var length = min(min(epochMillis.length, watts.length), min(amperes.length, volts.length));
+            var count = min(size, length);
+            var first = floorMod(next - count, max(times.length, 1));
+            for (var i = 0; i < count; i++) {
+                var index = (first + i) % times.length;
+                epochMillis[i] = times[index];
+                watts[i] = this.watts[index];
+                amperes[i] = this.amperes[index];
+                volts[i] = this.volts[index];
+            }
+            return count;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(requireNonNull(listener));
+    }
+
+    @Override
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,46 @@
+package de.malkusch.tuya.openhab.api;
+
+import io.netty.channel.EventLoopGroup;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Factory scoped liveness checks.
+ *
+ * A probe requests the device status and schedules its verdict on the event
+ * loop. The device counts as alive if it sent any traffic since the probe,
+ * otherwise it is reported as disconnected. Nothing blocks the caller.
+ */
+final class HealthMonitor {
+
+    private static final System.Logger log = System.getLogger(HealthMonitor.class.getName());
+    private final EventLoopGroup eventLoopGroup;
+    private final Set<Device> probing = ConcurrentHashMap.newKeySet();
+
+    HealthMonitor(EventLoopGroup eventLoopGroup) {
+        this.eventLoopGroup = requireNonNull(eventLoopGroup);
+    }
+
+    void probe(Device device, Duration timeout) {
+        if (!probing.add(device)) {
+            return;
+        }
+        log.log(DEBUG, "Probing {0}", device.id);
+        var since = nanoTime();
+        device.requestStatus();
+        eventLoopGroup.schedule(() -> {
+            probing.remove(device);
+            if (device.sync.lastTraffic() - since < 0) {
+                log.log(DEBUG, "Disconnecting {0}", device.id);
+                device.sync.connectionStatus(false);
+            }
+        }, timeout.toNanos(), NANOSECONDS);
+    }
+}
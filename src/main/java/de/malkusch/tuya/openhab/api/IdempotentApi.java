@@ -0,0 +1,124 @@
+package de.malkusch.tuya.openhab.api;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.time.Instant.now;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Skips commands if a fresh state already has the requested power and the
+ * device is connected. A disconnected device may have been switched
+ * physically, so its last state is not trusted. Optimistic states are not
+ * considered, as they may still be rolled back.
+ */
+final class IdempotentApi implements Api {
+
+    private static final System.Logger log = System.getLogger(IdempotentApi.class.getName());
+    private final Api api;
+    private final Duration freshness;
+    private final LongAdder avoided;
+    private final AtomicInteger sending = new AtomicInteger();
+    private volatile State state = new State(Power.OFF, Instant.MIN);
+
+    IdempotentApi(Api api, Duration freshness, LongAdder avoided) {
+        this.api = requireNonNull(api);
+        this.freshness = requireNonNull(freshness);
+        this.avoided = requireNonNull(avoided);
+    }
+
+    @Override
+    public void enable() throws IOException {
+        api.enable();
+    }
+
+    @Override
+    public State state() throws IOException {
+        return api.state();
+    }
+
+    @Override
+    public CompletableFuture<State> stateAsync() {
+        return api.stateAsync();
+    }
+
+    @Override
+    public void syncState(State state) {
+        this.state = state;
+        api.syncState(state);
+    }
+
+    @Override
+    public void send(Power power) throws IOException {
+        if (isRedundant(power)) {
+            return;
+        }
+        sending.incrementAndGet();
+        try {
+            api.send(power);
+        } finally {
+            sending.decrementAndGet();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(Power power) {
+        if (isRedundant(power)) {
+            return completedFuture(null);
+        }
+        sending.incrementAndGet();
+        return api.sendAsync(power).whenComplete((result, error) -> sending.decrementAndGet());
+    }
+
+    @Override
+    public CompletableFuture<Void> sendOptimistic(Power power) {
+        if (isRedundant(power)) {
+            return completedFuture(null);
+        }
+        sending.incrementAndGet();
+        return api.sendOptimistic(power).whenComplete((result, error) -> sending.decrementAndGet());
+    }
+
+    private boolean isRedundant(Power power) {
+        var state = this.state;
+        if (sending.get() > 0 || !api.isConnected() || state.power() != power
+                || !state.time().plus(freshness).isAfter(now())) {
+            return false;
+        }
+        log.log(DEBUG, "Skipping redundant update to {0}", power);
+        avoided.increment();
+        return true;
+    }
+
+    @Override
+    public void set(Map<Integer, Object> datapoints) throws IOException {
+        api.set(datapoints);
+    }
+
+    @Override
+    public void syncConnected(boolean connected) {
+        api.syncConnected(connected);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return api.isConnected();
+    }
+
+    @Override
+    public Device device() {
+        return api.device();
+    }
+
+    @Override
+    public void close() throws Exception {
+        api.close();
+    }
+}
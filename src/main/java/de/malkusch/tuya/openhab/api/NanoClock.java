@@ -0,0 +1,12 @@
+package de.malkusch.tuya.openhab.api;
+
+/**
+ * Monotonic time source in nanoseconds, replaceable in tests.
+ */
+@FunctionalInterface
+interface NanoClock {
+
+    static final NanoClock SYSTEM = System::nanoTime;
+
+    long nanoTime();
+}
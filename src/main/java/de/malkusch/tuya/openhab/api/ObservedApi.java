@@ -0,0 +1,122 @@
+package de.malkusch.tuya.openhab.api;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static java.time.Instant.now;
+import static java.util.Objects.requireNonNull;
+
+final class ObservedApi implements Api {
+
+    /**
+     * Published if an optimistic state failed before the device ever
+     * reported one. It matches the fleet state of a device which never
+     * reported.
+     */
+    static final State UNKNOWN = new State(Power.OFF, Instant.MIN);
+
+    private final Api api;
+    private final Observer observer;
+    private volatile boolean closed = false;
+    private volatile State confirmed;
+
+    ObservedApi(Api api, Observer observer) {
+        this.api = requireNonNull(api);
+        this.observer = requireNonNull(observer);
+    }
+
+    @Override
+    public void enable() throws IOException {
+        api.enable();
+    }
+
+    @Override
+    public State state() throws IOException {
+        return api.state();
+    }
+
+    @Override
+    public CompletableFuture<State> stateAsync() {
+        return api.stateAsync();
+    }
+
+    @Override
+    public void syncState(State state) {
+        api.syncState(state);
+        confirmed = state;
+        if (!closed) {
+            observer.stateChanged(device().id, state);
+        }
+    }
+
+    @Override
+    public void send(Power power) throws IOException {
+        api.send(power);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(Power power) {
+        return api.sendAsync(power);
+    }
+
+    /**
+     * A confirmation which is already done wasn't sent, e.g. because it was
+     * redundant, so there is no optimistic state to publish. A sent command is
+     * confirmed by a state from the device, which is published anyway.
+     */
+    @Override
+    public CompletableFuture<Void> sendOptimistic(Power power) {
+        var confirmation = api.sendOptimistic(power);
+        if (confirmation.isDone()) {
+            return confirmation;
+        }
+        publish(new State(power, now()));
+        return confirmation.whenComplete((result, error) -> {
+            if (error != null) {
+                var confirmed = this.confirmed;
+                publish(confirmed != null ? confirmed : UNKNOWN);
+            }
+        });
+    }
+
+    private void publish(State state) {
+        if (!closed) {
+            observer.stateChanged(device().id, state);
+        }
+    }
+
+    @Override
+    public void set(Map<Integer, Object> datapoints) throws IOException {
+        api.set(datapoints);
+    }
+
+    @Override
+    public void syncConnected(boolean connected) {
+        api.syncConnected(connected);
+        if (!closed) {
+            observer.connectionChanged(device().id, connected);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return api.isConnected();
+    }
+
+    @Override
+    public Device device() {
+        return api.device();
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        try {
+            api.close();
+        } finally {
+            observer.closed(device().id, this);
+        }
+    }
+}
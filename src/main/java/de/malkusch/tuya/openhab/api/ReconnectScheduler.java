@@ -0,0 +1,107 @@
+package de.malkusch.tuya.openhab.api;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.Math.min;
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Reconnects offline devices in the background.
+ *
+ * Each device retries with an exponential, jittered backoff. The size of the
+ * thread pool caps how many reconnects run at the same time across all
+ * devices of a factory.
+ */
+final class ReconnectScheduler implements AutoCloseable {
+
+    /**
+     * A connection which is reconnected in the background.
+     */
+    static interface Target {
+
+        String deviceId();
+
+        boolean isClosed();
+
+        boolean isConnected();
+
+        /**
+         * Blocks until connected or the connection attempt failed.
+         */
+        boolean reconnect();
+
+        /**
+         * Set while a reconnect of this target is scheduled.
+         */
+        AtomicBoolean reconnectScheduled();
+    }
+
+    private static final System.Logger log = System.getLogger(ReconnectScheduler.class.getName());
+    private final ScheduledExecutorService executor;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private volatile boolean closed = false;
+
+    ReconnectScheduler(Api.BackgroundReconnects settings) {
+        requireNonNull(settings);
+        this.executor = newScheduledThreadPool(settings.maxConcurrent(), runnable -> {
+            var thread = new Thread(runnable, "tuya-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.initialBackoff = settings.initialBackoff().toMillis();
+        this.maxBackoff = settings.maxBackoff().toMillis();
+    }
+
+    /**
+     * Does nothing after {@link #close()}. Devices may still report a
+     * disconnect from the event loop while the factory shuts down.
+     */
+    void schedule(Target target) {
+        if (closed || target.isClosed()) {
+            return;
+        }
+        if (target.reconnectScheduled().compareAndSet(false, true)) {
+            log.log(DEBUG, "Scheduling reconnect of {0}", target.deviceId());
+            schedule(target, 0, 0);
+        }
+    }
+
+    private void attempt(Target target, int attempt) {
+        if (target.isClosed() || target.isConnected() || target.reconnect()) {
+            target.reconnectScheduled().set(false);
+            return;
+        }
+        var backoff = backoff(attempt);
+        log.log(DEBUG, "Retrying reconnect of {0} in {1} ms", target.deviceId(), backoff);
+        schedule(target, attempt + 1, backoff);
+    }
+
+    private void schedule(Target target, int attempt, long delay) {
+        try {
+            executor.schedule(() -> attempt(target, attempt), delay, MILLISECONDS);
+
+        } catch (RejectedExecutionException e) {
+            log.log(DEBUG, "Dropping reconnect of {0}, the scheduler is closed", target.deviceId());
+            target.reconnectScheduled().set(false);
+        }
+    }
+
+    long backoff(int attempt) {
+        var backoff = min(maxBackoff, initialBackoff << min(attempt, 20));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+}
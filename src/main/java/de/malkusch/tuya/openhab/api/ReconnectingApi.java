@@ -1,39 +1,65 @@
 package de.malkusch.tuya.openhab.api;
 
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.Metrics.Operation;
+
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
-import static java.time.Duration.between;
-import static java.time.Instant.now;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
-final class ReconnectingApi implements Api {
+final class ReconnectingApi implements Api, ReconnectScheduler.Target {
 
     private static final System.Logger log = System.getLogger(ApiSync.class.getName());
     private final Api api;
     private final Duration timeout;
-    private final Object lock = new Object();
+    private final Metrics metrics;
+    private final ReentrantLock reconnectLock = new ReentrantLock();
+    private final AtomicReference<CompletableFuture<Void>> connection = new AtomicReference<>();
+    private final Optional<ReconnectScheduler> scheduler;
+    private final AtomicBoolean reconnectScheduled = new AtomicBoolean();
+    private volatile boolean closed = false;
+    private final Query<State> state;
 
-    public ReconnectingApi(Api api, Duration timeout) {
+    public ReconnectingApi(Api api, Duration timeout, Metrics metrics, Optional<ReconnectScheduler> scheduler) {
         this.api = requireNonNull(api);
         this.timeout = requireNonNull(timeout);
+        this.metrics = requireNonNull(metrics);
+        this.scheduler = requireNonNull(scheduler);
+        this.state = api::state;
     }
 
     @Override
     public void enable() throws IOException {
         api.enable();
-        synchronized (lock) {
-            if (!awaitConnected()) {
-                throw new IOException("Not connected");
-            }
+        if (!awaitConnected()) {
+            throw new IOException("Not connected");
         }
     }
 
     @Override
     public State state() throws IOException {
-        return reconnected(api::state);
+        return reconnected(state);
+    }
+
+    @Override
+    public CompletableFuture<State> stateAsync() {
+        return connectedAsync().thenCompose(it -> api.stateAsync());
     }
 
     @Override
@@ -46,11 +72,122 @@ final class ReconnectingApi implements Api {
         reconnected(() -> api.send(power));
     }
 
+    @Override
+    public CompletableFuture<Void> sendAsync(Power power) {
+        return connectedAsync().thenCompose(it -> api.sendAsync(power));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendOptimistic(Power power) {
+        return connectedAsync().thenCompose(it -> api.sendOptimistic(power));
+    }
+
+    @Override
+    public void set(Map<Integer, Object> datapoints) throws IOException {
+        reconnected(() -> api.set(datapoints));
+    }
+
     @Override
     public void syncConnected(boolean connected) {
-        synchronized (lock) {
-            api.syncConnected(connected);
-            lock.notifyAll();
+        api.syncConnected(connected);
+        if (connected) {
+            var waiting = connection.getAndSet(null);
+            if (waiting != null) {
+                waiting.complete(null);
+            }
+            var reconnect = reconnecting.getAndSet(null);
+            if (reconnect != null) {
+                reconnect.connected.complete(null);
+            }
+        } else {
+            scheduler.ifPresent(it -> it.schedule(this));
+        }
+    }
+
+    /**
+     * An asynchronous reconnect, shared by concurrent callers. The device
+     * completes connected, callers wait for the result.
+     */
+    private static record PendingReconnect(CompletableFuture<Void> connected, CompletableFuture<Void> result) {
+    }
+
+    private final AtomicReference<PendingReconnect> reconnecting = new AtomicReference<>();
+
+    private CompletableFuture<Void> connectedAsync() {
+        if (isConnected()) {
+            return completedFuture(null);
+        }
+        if (scheduler.isPresent()) {
+            scheduler.get().schedule(this);
+            return failedFuture(new IOException("Device is offline"));
+        }
+        var reconnect = new PendingReconnect(new CompletableFuture<>(), new CompletableFuture<>());
+        var pending = reconnecting.compareAndExchange(null, reconnect);
+        if (pending != null) {
+            return pending.result;
+        }
+        log.log(DEBUG, "Reconnecting asynchronously");
+        var start = nanoTime();
+        var started = startReconnect();
+        reconnect.connected.orTimeout(timeout.toMillis(), MILLISECONDS).whenComplete((connected, error) -> {
+            if (error == null || !reconnecting.compareAndSet(reconnect, null)) {
+                if (started) {
+                    metrics.reconnected(device().id, nanoTime() - start, true);
+                }
+                reconnect.result.complete(null);
+                return;
+            }
+            log.log(DEBUG, "Reconnecting failed");
+            if (started) {
+                metrics.reconnected(device().id, nanoTime() - start, false);
+                disposeFailedReconnect();
+            }
+            reconnect.result.completeExceptionally(new IOException("Reconnect failed"));
+        });
+        if (isConnected() && reconnecting.compareAndSet(reconnect, null)) {
+            reconnect.connected.complete(null);
+        }
+        return reconnect.result;
+    }
+
+    /**
+     * Connects the device, unless a blocking {@link #reconnect()} already
+     * does. Only the holder of the reconnect lock touches the device.
+     *
+     * @return false if the device is left to the blocking reconnect
+     */
+    private boolean startReconnect() {
+        if (!reconnectLock.tryLock()) {
+            log.log(DEBUG, "Joining blocking reconnect");
+            return false;
+        }
+        try {
+            if (isConnected()) {
+                return false;
+            }
+            device().dispose();
+            device().connect();
+            return true;
+
+        } finally {
+            reconnectLock.unlock();
+        }
+    }
+
+    /**
+     * Runs on the timer of the timeout, so it doesn't wait for a blocking
+     * reconnect. That one disposes the device itself if it fails.
+     */
+    private void disposeFailedReconnect() {
+        if (!reconnectLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!isConnected()) {
+                device().dispose();
+            }
+        } finally {
+            reconnectLock.unlock();
         }
     }
 
@@ -64,17 +201,13 @@ final class ReconnectingApi implements Api {
     }
 
     private <T> T reconnected(Query<T> query) throws IOException {
-        synchronized (lock) {
-            if (!isConnected()) {
-                log.log(DEBUG, "Reconnecting");
-                device().dispose();
-                device().connect();
-                if (!awaitConnected()) {
-                    log.log(DEBUG, "Reconnecting failed");
-                    device().dispose();
-                    throw new IOException("Reconnect failed");
-                }
-                log.log(DEBUG, "Reconnected");
+        if (!isConnected()) {
+            if (scheduler.isPresent()) {
+                scheduler.get().schedule(this);
+                throw new IOException("Device is offline");
+            }
+            if (!reconnect()) {
+                throw new IOException("Reconnect failed");
             }
         }
         try {
@@ -86,11 +219,57 @@ final class ReconnectingApi implements Api {
         }
     }
 
-    private void checkConnected() {
-        synchronized (lock) {
-            if (!isConnected()) {
-                return;
+    @Override
+    public AtomicBoolean reconnectScheduled() {
+        return reconnectScheduled;
+    }
+
+    @Override
+    public String deviceId() {
+        return device().id;
+    }
+
+    @Override
+    public boolean reconnect() {
+        reconnectLock.lock();
+        try {
+            if (isConnected()) {
+                return true;
+            }
+            if (reconnecting.get() != null) {
+                log.log(DEBUG, "Joining asynchronous reconnect");
+                if (awaitConnected()) {
+                    return true;
+                }
+                device().dispose();
+                return false;
+            }
+            log.log(DEBUG, "Reconnecting");
+            var start = nanoTime();
+            device().dispose();
+            device().connect();
+            if (!awaitConnected()) {
+                log.log(DEBUG, "Reconnecting failed");
+                metrics.reconnected(device().id, nanoTime() - start, false);
+                device().dispose();
+                return false;
             }
+            metrics.reconnected(device().id, nanoTime() - start, true);
+            log.log(DEBUG, "Reconnected");
+            return true;
+
+        } finally {
+            reconnectLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void checkConnected() {
+        if (isConnected()) {
             device().checkConnected(timeout);
         }
     }
@@ -108,31 +287,30 @@ final class ReconnectingApi implements Api {
     }
 
     private boolean awaitConnected() {
-        var start = now();
-        var waitUntil = start.plus(timeout);
-        synchronized (lock) {
-            if (isConnected()) {
-                return true;
-            }
-            log.log(DEBUG, "Waiting for connection");
-            while (!isConnected()) {
-                if (Thread.interrupted()) {
-                    currentThread().interrupt();
-                    return isConnected();
-                }
-                if (now().isAfter(waitUntil)) {
-                    log.log(DEBUG, "Waiting for connection timed out");
-                    return isConnected();
-                }
-                try {
-                    lock.wait(100);
+        if (isConnected()) {
+            return true;
+        }
+        var next = new CompletableFuture<Void>();
+        var pending = connection.compareAndExchange(null, next);
+        var connected = pending != null ? pending : next;
+        if (isConnected()) {
+            return true;
+        }
+        log.log(DEBUG, "Waiting for connection");
+        var start = nanoTime();
+        try {
+            connected.get(timeout.toNanos(), NANOSECONDS);
+            log.log(DEBUG, "Connected after {0} ms", NANOSECONDS.toMillis(nanoTime() - start));
 
-                } catch (InterruptedException e) {
-                    currentThread().interrupt();
-                    return isConnected();
-                }
-            }
-            log.log(DEBUG, "Connected after {0} ms", between(start, now()).toMillis());
+        } catch (TimeoutException e) {
+            log.log(DEBUG, "Waiting for connection timed out");
+            metrics.timedOut(device().id, Operation.CONNECT);
+
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+
+        } catch (ExecutionException e) {
+            log.log(DEBUG, "Waiting for connection failed");
         }
         return isConnected();
     }
@@ -144,6 +322,7 @@ final class ReconnectingApi implements Api {
 
     @Override
     public void close() throws Exception {
+        closed = true;
         api.close();
     }
 }
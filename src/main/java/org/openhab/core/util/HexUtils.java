@@ -12,7 +12,8 @@
  */
 package org.openhab.core.util;
 
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Static utility methods that are helpful when dealing with hex data and byte
@@ -27,8 +28,26 @@ public class HexUtils {
     private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E',
             'F' };
 
-    private static final int ASCII_DIGITS_START_POSITION = 48;
-    private static final int ASCII_UPPERCASE_LETTERS_START_POSITION = 65;
+    // both hex characters of every byte value
+    private static final char[] HEX_PAIRS = new char[512];
+
+    // value of every ASCII hex character, -1 for other characters
+    private static final byte[] UNHEX = new byte[128];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[2 * i] = (char) HEX[i >>> 4];
+            HEX_PAIRS[2 * i + 1] = (char) HEX[i & 0x0F];
+        }
+        Arrays.fill(UNHEX, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            UNHEX['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            UNHEX['A' + i] = (byte) (10 + i);
+            UNHEX['a' + i] = (byte) (10 + i);
+        }
+    }
 
     private HexUtils() {
         // private constructor as we only have static methods
@@ -52,20 +71,95 @@ public class HexUtils {
         if (bytes.length == 0) {
             return "";
         }
+        if (delimiter.length() == 0) {
+            final char[] chars = new char[bytes.length * 2];
+            bytesToHex(bytes, 0, bytes.length, chars, 0);
+            return new String(chars);
+        }
         final StringBuilder sb = new StringBuilder(bytes.length * 2 + delimiter.length() * (bytes.length - 1));
         int pos = 0;
         while (pos < bytes.length - 1) {
-            final byte[] hex = byteToHex(bytes[pos++]);
-            sb.append((char) hex[0]);
-            sb.append((char) hex[1]);
+            final int i = (bytes[pos++] & 0xFF) << 1;
+            sb.append(HEX_PAIRS[i]);
+            sb.append(HEX_PAIRS[i + 1]);
             sb.append(delimiter);
         }
-        final byte[] hex = byteToHex(bytes[pos++]);
-        sb.append((char) hex[0]);
-        sb.append((char) hex[1]);
+        final int i = (bytes[pos] & 0xFF) << 1;
+        sb.append(HEX_PAIRS[i]);
+        sb.append(HEX_PAIRS[i + 1]);
         return sb.toString();
     }
 
+    /**
+     * Writes the hex characters of a byte range into a destination array,
+     * without intermediate objects.
+     *
+     * @param bytes
+     *            the source array
+     * @param offset
+     *            the first byte to convert
+     * @param length
+     *            the number of bytes to convert
+     * @param destination
+     *            receives {@code 2 * length} characters
+     * @param destinationOffset
+     *            the index of the first character in the destination
+     * @return the number of written characters
+     */
+    public static int bytesToHex(byte[] bytes, int offset, int length, char[] destination, int destinationOffset) {
+        int d = destinationOffset;
+        for (int pos = offset, end = offset + length; pos < end; pos++) {
+            final int i = (bytes[pos] & 0xFF) << 1;
+            destination[d++] = HEX_PAIRS[i];
+            destination[d++] = HEX_PAIRS[i + 1];
+        }
+        return d - destinationOffset;
+    }
+
+    /**
+     * Writes the hex characters of the remaining bytes of a buffer into a
+     * destination array and consumes them. Netty's ByteBuf can be passed as
+     * {@code nioBuffer()}.
+     *
+     * @param buffer
+     *            the source buffer
+     * @param destination
+     *            receives {@code 2 * buffer.remaining()} characters
+     * @param destinationOffset
+     *            the index of the first character in the destination
+     * @return the number of written characters
+     */
+    public static int bytesToHex(ByteBuffer buffer, char[] destination, int destinationOffset) {
+        if (buffer.hasArray()) {
+            final int length = buffer.remaining();
+            bytesToHex(buffer.array(), buffer.arrayOffset() + buffer.position(), length, destination,
+                    destinationOffset);
+            buffer.position(buffer.position() + length);
+            return 2 * length;
+        }
+        int d = destinationOffset;
+        while (buffer.hasRemaining()) {
+            final int i = (buffer.get() & 0xFF) << 1;
+            destination[d++] = HEX_PAIRS[i];
+            destination[d++] = HEX_PAIRS[i + 1];
+        }
+        return d - destinationOffset;
+    }
+
+    /**
+     * Converts the remaining bytes of a buffer into a hex string (in format
+     * "0123456789ABCDEF") and consumes them.
+     *
+     * @param buffer
+     *            the source buffer
+     * @return the corresponding hex string
+     */
+    public static String bytesToHex(ByteBuffer buffer) {
+        final char[] chars = new char[buffer.remaining() * 2];
+        bytesToHex(buffer, chars, 0);
+        return new String(chars);
+    }
+
     /**
      * Converts a byte array into a hex string (in format "0123456789ABCDEF").
      *
@@ -106,11 +200,10 @@ public class HexUtils {
         final byte[] bytes = new byte[splitted.length];
         int pos = 0;
         for (final String part : splitted) {
-            final byte[] in = part.getBytes(StandardCharsets.UTF_8);
-            if (in.length != 2) {
+            if (part.length() != 2) {
                 throw new IllegalArgumentException("hexString needs to have an even length: " + hexString);
             }
-            bytes[pos++] = (byte) (unhex(in[0]) << 4 | unhex(in[1]));
+            bytes[pos++] = (byte) (unhex(part.charAt(0)) << 4 | unhex(part.charAt(1)));
         }
         return bytes;
     }
@@ -123,11 +216,65 @@ public class HexUtils {
      * @return the corresponding byte array
      */
     public static byte[] hexToBytes(String hexString) {
-        return hexToBytes(hexString, "(?<=\\G.{2})");
+        if (hexString.length() % 2 != 0) {
+            throw new IllegalArgumentException("hexString needs to have an even length: " + hexString);
+        }
+        final byte[] bytes = new byte[hexString.length() / 2];
+        hexToBytes(hexString, 0, hexString.length(), bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Converts a range of hex characters (in format "0123456789ABCDEF") into a
+     * destination array, without intermediate objects.
+     *
+     * @param hex
+     *            the hex characters
+     * @param offset
+     *            the index of the first character
+     * @param length
+     *            the even number of characters to convert
+     * @param destination
+     *            receives {@code length / 2} bytes
+     * @param destinationOffset
+     *            the index of the first byte in the destination
+     * @return the number of written bytes
+     * @throws IllegalArgumentException
+     *             if the length is odd or a character is invalid
+     */
+    public static int hexToBytes(CharSequence hex, int offset, int length, byte[] destination,
+            int destinationOffset) {
+        if (length % 2 != 0) {
+            throw new IllegalArgumentException("hexString needs to have an even length: " + hex);
+        }
+        int d = destinationOffset;
+        for (int pos = offset, end = offset + length; pos < end; pos += 2) {
+            destination[d++] = (byte) (unhex(hex.charAt(pos)) << 4 | unhex(hex.charAt(pos + 1)));
+        }
+        return d - destinationOffset;
+    }
+
+    /**
+     * Converts hex characters (in format "0123456789ABCDEF") into a buffer.
+     *
+     * @param hex
+     *            the hex characters
+     * @param buffer
+     *            receives {@code hex.length() / 2} bytes
+     * @throws IllegalArgumentException
+     *             if the length is odd or a character is invalid
+     */
+    public static void hexToBytes(CharSequence hex, ByteBuffer buffer) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("hexString needs to have an even length: " + hex);
+        }
+        for (int pos = 0; pos < hex.length(); pos += 2) {
+            buffer.put((byte) (unhex(hex.charAt(pos)) << 4 | unhex(hex.charAt(pos + 1))));
+        }
     }
 
     public static byte hexToByte(byte high, byte low) {
-        return (byte) ((unhex(high) << 4) | unhex(low));
+        return (byte) ((unhex((char) high) << 4) | unhex((char) low));
     }
 
     /**
@@ -139,13 +286,12 @@ public class HexUtils {
      * @throws IllegalArgumentException
      *             if a value is invalid
      */
-    private static byte unhex(byte value) {
-        if ('0' <= value && value <= '9') {
-            return (byte) (value - ASCII_DIGITS_START_POSITION);
-        } else if ('A' <= value && value <= 'F') {
-            return (byte) (value - ASCII_UPPERCASE_LETTERS_START_POSITION + 10);
-        } else {
-            throw new IllegalArgumentException("hexString contains illegal character for hexToBytes: " + value);
+    private static int unhex(char value) {
+        final int unhexed = value < UNHEX.length ? UNHEX[value] : -1;
+        if (unhexed < 0) {
+            throw new IllegalArgumentException(
+                    "hexString contains illegal character for hexToBytes: " + (int) value);
         }
+        return unhexed;
     }
 }
@@ -0,0 +1,33 @@
+package de.malkusch.tuya;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+public class DatapointTest {
+
+    @Test
+    void shouldDecodeTypedValues() {
+        assertEquals(Optional.of(true), Datapoint.SWITCH.decode(true));
+        assertEquals(Optional.of(2301L), Datapoint.VOLTAGE.decode(2301.0));
+        assertEquals(Optional.of("white"), Datapoint.string(21).decode("white"));
+    }
+
+    @Test
+    void shouldNotDecodeOtherTypes() {
+        assertTrue(Datapoint.SWITCH.decode(1.0).isEmpty());
+        assertTrue(Datapoint.POWER.decode("1").isEmpty());
+        assertTrue(Datapoint.POWER.decode(null).isEmpty());
+    }
+
+    @Test
+    void shouldBatchCommand() {
+        var command = Datapoint.command().with(Datapoint.SWITCH, true).with(Datapoint.COUNTDOWN, 60L);
+
+        assertEquals(Map.of(1, true, 9, 60L), command.values());
+    }
+}
@@ -0,0 +1,16 @@
+package de.malkusch.tuya;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class TuyaApiTest {
+
+    @Test
+    void shouldRejectInvalidMeteringHistorySize() {
+        var builder = TuyaApi.buildFactory();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.withMetering(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.withMetering(-1));
+    }
+}
@@ -0,0 +1,54 @@
+package de.malkusch.tuya.openhab;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.openhab.api.Api;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+
+public class ApiRegistryTest {
+
+    private final OpenhabFleetState fleetState = new OpenhabFleetState();
+    private final ApiRegistry registry = new ApiRegistry(fleetState);
+
+    @Test
+    void shouldKeepReplacementWhenStaleApiCloses() {
+        var stale = api();
+        var current = api();
+        registry.register("a", stale);
+        registry.register("a", current);
+        registry.stateChanged("a", new State(Power.ON, Instant.now()));
+
+        registry.closed("a", stale);
+
+        assertSame(current, registry.api("a").get());
+        assertTrue(fleetState.state("a").isPresent());
+    }
+
+    @Test
+    void shouldForgetClosedApi() {
+        var current = api();
+        registry.register("a", current);
+        registry.stateChanged("a", new State(Power.ON, Instant.now()));
+
+        registry.closed("a", current);
+
+        assertTrue(registry.api("a").isEmpty());
+        assertTrue(fleetState.state("a").isEmpty());
+    }
+
+    private static Api api() {
+        return (Api) Proxy.newProxyInstance(Api.class.getClassLoader(), new Class<?>[] { Api.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+                });
+    }
+}
@@ -0,0 +1,143 @@
+package de.malkusch.tuya.openhab;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.TuyaApi;
+import de.malkusch.tuya.TuyaApi.Factory.Result;
+
+public class ConcurrentCreationTest {
+
+    private final Set<String> closed = ConcurrentHashMap.newKeySet();
+
+    @Test
+    void shouldIsolateFailingDevice() throws Exception {
+        var results = ConcurrentCreation.create(Map.of("a", "key", "b", "key", "c", "key"), 2, (deviceId, key) -> {
+            if (deviceId.equals("b")) {
+                throw new IOException("Discovery timed out");
+            }
+            return api(deviceId);
+        });
+
+        assertTrue(results.get("a").isSuccess());
+        assertTrue(results.get("c").isSuccess());
+        assertFalse(results.get("b").isSuccess());
+        assertEquals("Discovery timed out", results.get("b").error().get().getMessage());
+    }
+
+    @Test
+    void shouldBoundParallelism() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var localKeys = Map.of("a", "key", "b", "key", "c", "key", "d", "key", "e", "key");
+
+        ConcurrentCreation.create(localKeys, 2, (deviceId, key) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return api(deviceId);
+        });
+
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void shouldBoundParallelismByDefault() throws Exception {
+        var localKeys = new HashMap<String, String>();
+        for (int i = 0; i < 100; i++) {
+            localKeys.put("device" + i, "key");
+        }
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+
+        var results = ConcurrentCreation.create(localKeys, (deviceId, key) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return api(deviceId);
+        });
+
+        assertEquals(localKeys.size(), results.size());
+        assertTrue(results.values().stream().allMatch(Result::isSuccess));
+        assertEquals(TuyaApi.Factory.DEFAULT_PARALLELISM, maxRunning.get());
+    }
+
+    @Test
+    void shouldCloseCreatedApisWhenInterrupted() throws Exception {
+        var created = new CountDownLatch(1);
+        var blocked = new CountDownLatch(1);
+        var caller = Thread.currentThread();
+
+        var interrupter = new Thread(() -> {
+            try {
+                created.await();
+                blocked.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            caller.interrupt();
+        });
+        interrupter.start();
+
+        var localKeys = new LinkedHashMap<String, String>();
+        localKeys.put("fast", "key");
+        localKeys.put("slow", "key");
+        assertThrows(IOException.class, () -> ConcurrentCreation.create(localKeys, 2, (deviceId, key) -> {
+            if (deviceId.equals("slow")) {
+                try {
+                    created.await();
+                    blocked.countDown();
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    throw new IOException("Discovery was interrupted", e);
+                }
+            }
+            var api = api(deviceId);
+            created.countDown();
+            return api;
+        }));
+        Thread.interrupted();
+        interrupter.join();
+
+        assertEquals(Set.of("fast"), closed);
+    }
+
+    @Test
+    void shouldRejectInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ConcurrentCreation.create(Map.of("a", "key"), 0, (deviceId, key) -> api(deviceId)));
+    }
+
+    private TuyaApi api(String deviceId) {
+        return (TuyaApi) Proxy.newProxyInstance(TuyaApi.class.getClassLoader(), new Class<?>[] { TuyaApi.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        closed.add(deviceId);
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,81 @@
+package de.malkusch.tuya.openhab;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class GroupSwitchTest {
+
+    @Test
+    void shouldStaggerStarts() throws Exception {
+        var starts = new ConcurrentHashMap<String, Long>();
+        var stagger = Duration.ofMillis(20);
+        var start = System.nanoTime();
+
+        var result = GroupSwitch.switchGroup(List.of("a", "b", "c"), 3, stagger,
+                deviceId -> starts.put(deviceId, System.nanoTime()));
+
+        assertTrue(result.isSuccess());
+        assertTrue(starts.get("b") - start >= stagger.toNanos());
+        assertTrue(starts.get("c") - start >= 2 * stagger.toNanos());
+    }
+
+    @Test
+    void shouldBoundParallelism() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+
+        var result = GroupSwitch.switchGroup(List.of("a", "b", "c", "d", "e"), 2, Duration.ZERO, deviceId -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+        });
+
+        assertTrue(result.isSuccess());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void shouldReportFailingDevices() throws Exception {
+        var result = GroupSwitch.switchGroup(List.of("a", "b", "c"), 2, Duration.ZERO, deviceId -> {
+            if (deviceId.equals("b")) {
+                throw new IOException("Device is offline");
+            }
+        });
+
+        assertFalse(result.isSuccess());
+        assertEquals(List.of("a", "b", "c"), List.copyOf(result.outcomes().keySet()));
+        assertEquals("Device is offline", result.failures().get("b").getMessage());
+        assertEquals(1, result.failures().size());
+    }
+
+    @Test
+    void shouldFailUnknownDevices() throws Exception {
+        try (var factory = new OpenhabTuyaApi.Factory(Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(5))) {
+
+            var result = factory.switchGroupOn(List.of("unknown"), 1, Duration.ZERO);
+
+            assertEquals("Unknown device unknown", result.failures().get("unknown").getMessage());
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> GroupSwitch.switchGroup(List.of("a"), 0, Duration.ZERO, deviceId -> {
+                }));
+        assertThrows(IllegalArgumentException.class,
+                () -> GroupSwitch.switchGroup(List.of("a"), 1, Duration.ofMillis(-1), deviceId -> {
+                }));
+    }
+}
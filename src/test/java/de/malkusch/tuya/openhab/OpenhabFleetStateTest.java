@@ -0,0 +1,56 @@
+package de.malkusch.tuya.openhab;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.FleetState.DeviceState;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+
+public class OpenhabFleetStateTest {
+
+    @Test
+    void shouldSnapshotPushedStates() {
+        var fleet = new OpenhabFleetState();
+        var time = Instant.parse("2024-01-01T00:00:00Z");
+
+        fleet.connectionChanged("a", true);
+        fleet.stateChanged("a", new State(Power.ON, time));
+        fleet.stateChanged("b", new State(Power.OFF, time));
+
+        var snapshot = fleet.snapshot();
+        assertEquals(new DeviceState("a", true, time, true), snapshot.get("a"));
+        assertEquals(new DeviceState("b", false, time, false), snapshot.get("b"));
+    }
+
+    @Test
+    void shouldNotifyOnlyChanges() {
+        var fleet = new OpenhabFleetState();
+        var changes = new ArrayList<DeviceState>();
+        fleet.addListener(changes::add);
+
+        fleet.stateChanged("a", new State(Power.ON, Instant.now()));
+        fleet.stateChanged("a", new State(Power.ON, Instant.now()));
+        fleet.stateChanged("a", new State(Power.OFF, Instant.now()));
+
+        assertEquals(2, changes.size());
+        assertTrue(changes.get(0).on());
+        assertFalse(changes.get(1).on());
+    }
+
+    @Test
+    void shouldForgetClosedDevices() {
+        var fleet = new OpenhabFleetState();
+
+        fleet.stateChanged("a", new State(Power.ON, Instant.now()));
+        fleet.closed("a", null);
+
+        assertTrue(fleet.state("a").isEmpty());
+    }
+}
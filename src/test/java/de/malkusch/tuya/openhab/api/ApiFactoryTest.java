@@ -0,0 +1,71 @@
+package de.malkusch.tuya.openhab.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.api.Api.BackgroundReconnects;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class ApiFactoryTest {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private EventLoopGroup eventLoopGroup;
+    private Api.Factory factory;
+
+    @BeforeEach
+    void setUp() {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        var observer = new Api.Observer() {
+
+            @Override
+            public void connectionChanged(String deviceId, boolean connected) {
+                events.add(deviceId + " connected " + connected);
+            }
+
+            @Override
+            public void closed(String deviceId, Api api) {
+                events.add(deviceId + " closed");
+            }
+        };
+        factory = new Api.Factory(Duration.ofMillis(100), Duration.ofMinutes(5), observer, false, Optional.empty(),
+                Metrics.NONE, Optional.of(new BackgroundReconnects(1, Duration.ofMillis(1), Duration.ofMillis(1))));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        factory.close();
+        eventLoopGroup.shutdownGracefully().await();
+    }
+
+    @Test
+    void shouldCloseFailedApiBeforeFallback() throws Exception {
+        var stale = DeviceFixture.device(eventLoopGroup, "192.0.2.1");
+        assertThrows(IOException.class, () -> factory.api(stale));
+        assertEquals(List.of("test closed"), events);
+
+        var replacement = DeviceFixture.device(eventLoopGroup, "192.0.2.2");
+        replacement.sync.connectionStatus(true);
+        replacement.sync.processDeviceStatus(Map.of(1, false));
+        try (var api = factory.api(replacement)) {
+            stale.sync.connectionStatus(false);
+            stale.sync.processDeviceStatus(Map.of(1, true));
+
+            assertEquals(List.of("test closed", "test connected true"), events);
+            assertEquals(Power.OFF, api.state().power());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.openhab.api.Api.Power;
+
+public class ApiSyncTest {
+
+    @Test
+    void shouldReplayUpdatesOnEnable() throws Exception {
+        var sync = new ApiSync();
+        var api = new FakeApi();
+
+        sync.connectionStatus(true);
+        sync.processDeviceStatus(Map.of(1, false));
+        sync.processDeviceStatus(Map.of(1, true));
+        sync.enable(api);
+
+        assertEquals(List.of(true), api.connections);
+        assertEquals(Power.ON, api.state.power());
+        assertEquals(1, api.states.get());
+    }
+
+    @Test
+    void shouldNotStallOtherDevicesOnSharedEventLoop() throws Exception {
+        var eventLoop = newSingleThreadExecutor();
+        try {
+            var pending = new ApiSync();
+            var enabled = new ApiSync();
+            var api = new FakeApi();
+            enabled.enable(api);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 10_000; i++) {
+                    var on = i % 2 == 0;
+                    eventLoop.execute(() -> pending.processDeviceStatus(Map.of(1, on)));
+                    eventLoop.execute(() -> pending.connectionStatus(on));
+                    eventLoop.execute(() -> enabled.processDeviceStatus(Map.of(1, on)));
+                }
+                eventLoop.submit(() -> {
+                }).get();
+            });
+
+            assertEquals(10_000, api.states.get());
+        } finally {
+            eventLoop.shutdownNow();
+        }
+    }
+}
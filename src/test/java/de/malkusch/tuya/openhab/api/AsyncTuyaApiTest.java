@@ -0,0 +1,96 @@
+package de.malkusch.tuya.openhab.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.AsyncTuyaApi;
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.OpenhabAsyncTuyaApi;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class AsyncTuyaApiTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private EventLoopGroup eventLoopGroup;
+    private Device device;
+    private AsyncTuyaApi api;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        device = DeviceFixture.device(eventLoopGroup);
+        var deviceApi = new DeviceApi(device, TIMEOUT, Duration.ofMinutes(5), Metrics.NONE);
+        var reconnectingApi = new ReconnectingApi(deviceApi, TIMEOUT, Metrics.NONE, Optional.empty());
+        device.sync.connectionStatus(true);
+        device.sync.processDeviceStatus(Map.of(1, false));
+        device.sync.enable(reconnectingApi);
+        api = new OpenhabAsyncTuyaApi(reconnectingApi);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        api.close();
+        eventLoopGroup.shutdownGracefully().await();
+    }
+
+    @Test
+    void shouldCompleteTurnOnWithDeviceStatus() throws Exception {
+        var turnedOn = api.turnOn();
+        assertFalse(turnedOn.isDone());
+
+        device.sync.processDeviceStatus(Map.of(1, true));
+
+        assertTrue(turnedOn.isDone());
+        turnedOn.get();
+        assertTrue(api.isOn().get());
+    }
+
+    @Test
+    void shouldFailTurnOnWithMismatchingDeviceStatus() {
+        var turnedOn = api.turnOn();
+
+        device.sync.processDeviceStatus(Map.of(1, false));
+
+        var error = assertThrows(ExecutionException.class, turnedOn::get);
+        assertInstanceOf(IOException.class, error.getCause());
+    }
+
+    @Test
+    void shouldAnswerIsOnFromFreshState() throws Exception {
+        var on = api.isOn();
+
+        assertTrue(on.isDone());
+        assertEquals(false, on.get());
+    }
+
+    @Test
+    void shouldCompleteManyCommandsFromOneStatus() throws Exception {
+        var commands = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 1_000; i++) {
+            commands.add(api.turnOn());
+        }
+
+        device.sync.processDeviceStatus(Map.of(1, true));
+
+        for (var command : commands) {
+            assertTrue(command.isDone());
+            command.get();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.malkusch.tuya.openhab.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smarthomej.binding.tuya.internal.local.DeviceStatusListener;
+
+public class CaptureTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldReplayCapturedMessages() throws Exception {
+        var file = dir.resolve("capture");
+        try (var capture = new CaptureWriter(file)) {
+            capture.connection("a", true);
+            capture.status("a", Map.of(1, true, 19, 1234.0));
+            capture.status("b", Map.of(1, false, 101, "mode"));
+            capture.connection("a", false);
+        }
+
+        var events = CaptureReader.read(file);
+        var replayed = new ArrayList<String>();
+        var count = CaptureReader.replay(events, deviceId -> new DeviceStatusListener() {
+
+            @Override
+            public void processDeviceStatus(Map<Integer, Object> deviceStatus) {
+                replayed.add(deviceId + " " + new TreeMap<>(deviceStatus));
+            }
+
+            @Override
+            public void connectionStatus(boolean status) {
+                replayed.add(deviceId + " " + status);
+            }
+        });
+
+        assertEquals(4, count);
+        assertEquals(List.of("a true", "a {1=true, 19=1234.0}", "b {1=false, 101=mode}", "a false"), replayed);
+    }
+
+    @Test
+    void shouldFlushAboveHighWaterMarkBeforeInterval() throws Exception {
+        var file = dir.resolve("capture");
+        try (var capture = new CaptureWriter(file, 1024, Duration.ofMinutes(1).toMillis())) {
+            for (int i = 0; i < 40; i++) {
+                capture.status("a", Map.of(1, true));
+            }
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (Files.size(file) == 0) {
+                    Thread.sleep(1);
+                }
+            });
+        }
+    }
+
+    @Test
+    void shouldWriteUnsignedShorts() throws Exception {
+        var file = dir.resolve("capture");
+        var devices = Short.MAX_VALUE + 10;
+        var value = "x".repeat(Short.MAX_VALUE + 10);
+        try (var capture = new CaptureWriter(file, 4 << 20, Duration.ofMinutes(1).toMillis())) {
+            for (int i = 0; i < devices; i++) {
+                capture.connection("device" + i, true);
+            }
+            capture.status("a", Map.of(101, value));
+            assertEquals(0, capture.dropped());
+        }
+
+        var events = CaptureReader.read(file);
+        assertEquals(devices + 1, events.size());
+        assertEquals("device" + (devices - 1), events.get(devices - 1).deviceId());
+        assertEquals(Map.of(101, value), ((CaptureReader.Status) events.get(devices)).deviceStatus());
+    }
+
+    @Test
+    void shouldDropStringsExceedingUnsignedShort() throws Exception {
+        var file = dir.resolve("capture");
+        try (var capture = new CaptureWriter(file)) {
+            capture.status("a", Map.of(101, "x".repeat(CaptureWriter.MAX_UNSIGNED_SHORT + 1)));
+            capture.status("a", Map.of(101, "mode"));
+
+            assertEquals(1, capture.dropped());
+        }
+
+        var events = CaptureReader.read(file);
+        assertEquals(1, events.size());
+        assertEquals(Map.of(101, "mode"), ((CaptureReader.Status) events.get(0)).deviceStatus());
+    }
+}
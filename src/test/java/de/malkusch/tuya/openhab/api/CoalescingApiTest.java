@@ -0,0 +1,144 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.time.Instant.now;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class CoalescingApiTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void shouldSendOnlyLatestPowerOfBurst() {
+        var device = new FakeApi();
+        device.confirming = false;
+        var api = new CoalescingApi(device, TIMEOUT);
+
+        var first = api.sendAsync(Power.ON);
+        var second = api.sendAsync(Power.OFF);
+        var third = api.sendAsync(Power.ON);
+        var fourth = api.sendAsync(Power.OFF);
+        device.confirm(0);
+        device.confirm(1);
+
+        assertEquals(List.of(Power.ON, Power.OFF), device.sent);
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertTrue(third.isDone());
+        assertTrue(fourth.isDone());
+    }
+
+    @Test
+    void shouldNotResendConfirmedPower() {
+        var device = new FakeApi();
+        device.confirming = false;
+        var api = new CoalescingApi(device, TIMEOUT);
+
+        api.sendAsync(Power.ON);
+        var second = api.sendAsync(Power.OFF);
+        var third = api.sendAsync(Power.ON);
+        assertFalse(second.isDone());
+        device.confirm(0);
+
+        assertEquals(List.of(Power.ON), device.sent);
+        assertTrue(third.isDone());
+    }
+
+    @Test
+    void shouldSendOnlyOnceForConcurrentBlockingSends() throws Exception {
+        var device = new FakeApi();
+        device.confirming = false;
+        var api = new CoalescingApi(device, TIMEOUT);
+
+        var sends = new ArrayList<FutureTask<Void>>();
+        for (int i = 0; i < 100; i++) {
+            sends.add(sendInBackground(api, Power.ON));
+        }
+        device.confirm(0);
+
+        for (var send : sends) {
+            send.get(1, SECONDS);
+        }
+        assertEquals(List.of(Power.ON), device.sent);
+    }
+
+    @Test
+    void shouldFailBlockingSendOverriddenByLaterPower() throws Exception {
+        var device = new FakeApi();
+        device.confirming = false;
+        var api = new CoalescingApi(device, TIMEOUT);
+
+        api.sendAsync(Power.ON);
+        var overridden = sendInBackground(api, Power.OFF);
+        var latest = api.sendAsync(Power.ON);
+        device.confirm(0);
+
+        var error = assertThrows(ExecutionException.class, () -> overridden.get(1, SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertTrue(latest.isDone());
+        assertEquals(List.of(Power.ON), device.sent);
+    }
+
+    @Test
+    void shouldTimeOutBlockingSend() {
+        var device = new FakeApi();
+        device.confirming = false;
+        var api = new CoalescingApi(device, Duration.ofMillis(50));
+
+        var error = assertThrows(IOException.class, () -> api.send(Power.ON));
+        assertEquals("Waiting for coalesced command timed out after 50 ms", error.getMessage());
+    }
+
+    @Test
+    void shouldFailBlockingSendOnMismatchingState() throws Exception {
+        var eventLoopGroup = new NioEventLoopGroup(1);
+        var device = DeviceFixture.device(eventLoopGroup);
+        var deviceApi = new DeviceApi(device, Duration.ofSeconds(10), Duration.ofMinutes(5), Metrics.NONE);
+        try (var api = new CoalescingApi(deviceApi, TIMEOUT)) {
+            api.syncState(new State(Power.OFF, now()));
+            var sending = sendInBackground(api, Power.ON);
+
+            api.syncState(new State(Power.OFF, now()));
+
+            var error = assertThrows(ExecutionException.class, () -> sending.get(1, SECONDS));
+            assertInstanceOf(IOException.class, error.getCause());
+
+        } finally {
+            eventLoopGroup.shutdownGracefully().await();
+        }
+    }
+
+    /**
+     * Returns once the blocking send waits for its confirmation.
+     */
+    private static FutureTask<Void> sendInBackground(Api api, Power power) {
+        var sending = new FutureTask<Void>(() -> {
+            api.send(power);
+            return null;
+        });
+        var thread = new Thread(sending);
+        thread.start();
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        return sending;
+    }
+}
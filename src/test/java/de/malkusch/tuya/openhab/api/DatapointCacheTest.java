@@ -0,0 +1,46 @@
+package de.malkusch.tuya.openhab.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class DatapointCacheTest {
+
+    private final DatapointCache cache = new DatapointCache();
+
+    @Test
+    void shouldNotAcceptValueReceivedBeforeSet() {
+        cache.merge(Map.of(101, "mode"));
+        var since = cache.sequence();
+
+        var error = assertThrows(IOException.class,
+                () -> cache.awaitValues(Map.of(101, "mode"), since, Duration.ofMillis(50)));
+        assertEquals("Update datapoints didn't change the state", error.getMessage());
+    }
+
+    @Test
+    void shouldAcceptValueReceivedAfterSet() throws Exception {
+        cache.merge(Map.of(101, "mode"));
+        var since = cache.sequence();
+        var waiting = new FutureTask<Void>(() -> {
+            cache.awaitValues(Map.of(101, "mode", 19, 1234), since, Duration.ofSeconds(10));
+            return null;
+        });
+        var thread = new Thread(waiting);
+        thread.start();
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+
+        cache.merge(Map.of(101, "mode", 19, 1234.0));
+
+        waiting.get(1, TimeUnit.SECONDS);
+    }
+}
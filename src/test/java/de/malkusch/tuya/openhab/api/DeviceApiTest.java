@@ -0,0 +1,253 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.time.Instant.now;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.Metrics.Operation;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class DeviceApiTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(50);
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> recorded = new CopyOnWriteArrayList<>();
+    private final AtomicLong latency = new AtomicLong(-1);
+    private final Metrics metrics = new Metrics() {
+
+        @Override
+        public void sent(String deviceId, long nanos, boolean success) {
+            latency.set(nanos);
+            recorded.add("sent " + success);
+        }
+
+        @Override
+        public void timedOut(String deviceId, Operation operation) {
+            recorded.add("timedOut " + operation);
+        }
+    };
+    private EventLoopGroup eventLoopGroup;
+    private Device device;
+    private DeviceApi api;
+
+    @BeforeEach
+    void setUp() {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        device = DeviceFixture.device(eventLoopGroup);
+        api = new DeviceApi(device, Duration.ofSeconds(10), Duration.ofMinutes(5), metrics, clock::get);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        device.close();
+        eventLoopGroup.shutdownGracefully().await();
+    }
+
+    @Test
+    void shouldExpireStateWithClock() {
+        api.syncState(new State(Power.ON, now()));
+        assertTrue(api.stateAsync().isDone());
+
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+
+        assertFalse(api.stateAsync().isDone());
+    }
+
+    @Test
+    void shouldReadCachedStateWhileSending() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+        var sending = new Thread(() -> {
+            try {
+                api.send(Power.ON);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        sending.start();
+        while (sending.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+
+        var state = assertTimeoutPreemptively(Duration.ofMillis(100), () -> api.state());
+        assertEquals(Power.OFF, state.power());
+
+        api.syncState(new State(Power.ON, now()));
+        sending.join();
+        assertEquals(Power.ON, api.state().power());
+    }
+
+    @Test
+    void shouldUpdateStateOptimistically() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+
+        var confirmation = api.sendOptimistic(Power.ON);
+
+        assertEquals(Power.ON, api.state().power());
+        assertFalse(confirmation.isDone());
+
+        api.syncState(new State(Power.ON, now()));
+        confirmation.get();
+    }
+
+    @Test
+    void shouldReportMismatchOfOptimisticState() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+
+        var confirmation = api.sendOptimistic(Power.ON);
+        api.syncState(new State(Power.OFF, now()));
+
+        assertTrue(confirmation.isCompletedExceptionally());
+        assertEquals(Power.OFF, api.state().power());
+    }
+
+    @Test
+    void shouldCompleteSendAsyncOnMatchingState() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+
+        var sent = api.sendAsync(Power.ON);
+        assertFalse(sent.isDone());
+
+        api.syncState(new State(Power.ON, now()));
+        assertTrue(sent.isDone());
+        sent.get();
+    }
+
+    @Test
+    void shouldFailSendAsyncOnMismatchingState() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+
+        var sent = api.sendAsync(Power.ON);
+        api.syncState(new State(Power.OFF, now()));
+
+        assertTrue(sent.isCompletedExceptionally());
+        var error = assertThrows(ExecutionException.class, sent::get);
+        assertEquals("Update power didn't change the state", error.getCause().getMessage());
+    }
+
+    @Test
+    void shouldCompleteStateAsyncOnNextState() throws Exception {
+        var state = api.stateAsync();
+        assertFalse(state.isDone());
+
+        api.syncState(new State(Power.ON, now()));
+        assertEquals(Power.ON, state.get().power());
+    }
+
+    @Test
+    void shouldTimeOutSendAsync() throws Exception {
+        var timingOut = new DeviceApi(device, TIMEOUT, Duration.ofMinutes(5), metrics);
+
+        var sent = timingOut.sendAsync(Power.ON);
+
+        var error = assertThrows(ExecutionException.class, sent::get);
+        assertEquals("Waiting for state timed out after 50 ms", error.getCause().getMessage());
+        assertEquals(List.of("timedOut STATE", "sent false"), recorded);
+        assertTrue(latency.get() >= TIMEOUT.toNanos());
+    }
+
+    @Test
+    void shouldRecordSendOnMatchingState() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+        var sending = sendInBackground(Power.ON);
+
+        api.syncState(new State(Power.ON, now()));
+        sending.join();
+
+        assertEquals(List.of("sent true"), recorded);
+        assertTrue(latency.get() >= 0);
+    }
+
+    @Test
+    void shouldRecordSendOnMismatchingState() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+        var sending = sendInBackground(Power.ON);
+
+        api.syncState(new State(Power.OFF, now()));
+        sending.join();
+
+        assertEquals(List.of("sent false"), recorded);
+    }
+
+    @Test
+    void shouldRecordTimedOutSend() {
+        var timingOut = new DeviceApi(device, TIMEOUT, Duration.ofMinutes(5), metrics, clock::get);
+        timingOut.syncState(new State(Power.OFF, now()));
+
+        var error = assertThrows(IOException.class, () -> timingOut.send(Power.ON));
+
+        assertTrue(error.getMessage().startsWith("Waiting for state timed out"));
+        assertEquals(List.of("timedOut STATE", "sent false"), recorded);
+        assertTrue(latency.get() >= TIMEOUT.toNanos());
+    }
+
+    @Test
+    void shouldRecordSendAsyncOnMatchingState() throws Exception {
+        api.syncState(new State(Power.OFF, now()));
+
+        var sent = api.sendAsync(Power.ON);
+        assertEquals(List.of(), recorded);
+
+        api.syncState(new State(Power.ON, now()));
+        sent.get();
+        assertEquals(List.of("sent true"), recorded);
+    }
+
+    @Test
+    void shouldRecordSendAsyncOnMismatchingState() {
+        api.syncState(new State(Power.OFF, now()));
+
+        var sent = api.sendAsync(Power.ON);
+        api.syncState(new State(Power.OFF, now()));
+
+        assertThrows(ExecutionException.class, sent::get);
+        assertEquals(List.of("sent false"), recorded);
+    }
+
+    @Test
+    void shouldRecordTimedOutStateAsync() {
+        var timingOut = new DeviceApi(device, TIMEOUT, Duration.ofMinutes(5), metrics, clock::get);
+
+        var state = timingOut.stateAsync();
+
+        assertThrows(ExecutionException.class, state::get);
+        assertEquals(List.of("timedOut STATE"), recorded);
+    }
+
+    /**
+     * Returns once the command waits for the device. The outcome is only
+     * observable through the metrics.
+     */
+    private Thread sendInBackground(Power power) {
+        var sending = new Thread(() -> {
+            try {
+                api.send(power);
+            } catch (IOException e) {
+                // recorded as failed send
+            }
+        });
+        sending.start();
+        while (sending.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        return sending;
+    }
+}
@@ -0,0 +1,26 @@
+package de.malkusch.tuya.openhab.api;
+
+import com.google.gson.Gson;
+
+import io.netty.channel.EventLoopGroup;
+
+/**
+ * Devices which never connect on their own. Tests drive them through
+ * {@link Device#sync}.
+ */
+final class DeviceFixture {
+
+    static final String DEVICE_ID = "test";
+
+    private DeviceFixture() {
+    }
+
+    static Device device(EventLoopGroup eventLoopGroup) {
+        return device(eventLoopGroup, "127.0.0.1");
+    }
+
+    static Device device(EventLoopGroup eventLoopGroup, String address) {
+        return new Device(new Gson(), new ApiSync(), eventLoopGroup, new HealthMonitor(eventLoopGroup), DEVICE_ID,
+                "secret".getBytes(), address, "3.3");
+    }
+}
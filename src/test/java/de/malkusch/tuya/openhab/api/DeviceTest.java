@@ -3,7 +3,11 @@ package de.malkusch.tuya.openhab.api;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
+import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -20,16 +24,83 @@ public class DeviceTest {
     void shouldDiscover() throws Exception {
         String deviceId = "bf3f795ce962dadfd88hx5";
         String localKey = "secret";
-        var discoveryPacket = "000055AA00000000000000130000009C00000000D09766676F3369EB10B5E9F132FD802A7A1E40D0CBEBCBBAAF6D9037D72ADB12C0E08B85428F69C0F5EB443B3428B648A46ECF78D163C8B2F111C8C375148D32C2D91FEA632B8557EB918162C1FC96744DC7FE823E307927FB0A44B0DFAE2C8DA2A472BD72B20E15E0F77B889F46B89A20780716567CE38AC1D583E9669FE8F0EEDD5C953BB9377560AE90DFBC45DBE2F9C05DDF0000AA55";
-        var factory = new Device.Factory(new Gson(), Duration.ofSeconds(3));
+        try (var factory = new Device.Factory(new Gson(), Duration.ofSeconds(3))) {
 
-        sendPacket(discoveryPacket, DISCOVERY_PORT);
-        var device = factory.device(deviceId, localKey);
+            sendPacket(DISCOVERY_PACKET, DISCOVERY_PORT);
+            var device = factory.device(deviceId, localKey);
 
-        assertEquals("bf3f795ce962dadfd88hx5", device.id);
+            assertEquals("bf3f795ce962dadfd88hx5", device.id);
+        }
     }
 
+    @Test
+    void shouldAnswerRepeatedDiscoveryFromRegistry() throws Exception {
+        String deviceId = "bf3f795ce962dadfd88hx5";
+        String localKey = "secret";
+        try (var factory = new Device.Factory(new Gson(), Duration.ofSeconds(3))) {
+
+            sendPacket(DISCOVERY_PACKET, DISCOVERY_PORT);
+            factory.device(deviceId, localKey);
+            var device = assertTimeoutPreemptively(Duration.ofMillis(500), () -> factory.device(deviceId, localKey));
+
+            assertEquals("bf3f795ce962dadfd88hx5", device.id);
+        }
+    }
+
+    @Test
+    void shouldSkipDiscoveryForStaticAddress() throws Exception {
+        try (var factory = new Device.Factory(new Gson(), Duration.ofSeconds(3))) {
+
+            var device = assertTimeoutPreemptively(Duration.ofMillis(500),
+                    () -> factory.device(DEVICE_ID, "secret", "192.0.2.1", "3.3", true));
+
+            assertEquals(DEVICE_ID, device.id);
+        }
+    }
+
+    @Test
+    void shouldAcceptStaticAddressWhichAgreesWithDiscovery() throws Exception {
+        try (var factory = new Device.Factory(new Gson(), Duration.ofSeconds(3))) {
+            sendPacket(DISCOVERY_PACKET, DISCOVERY_PORT);
+            factory.discoveredDevice(DEVICE_ID, "secret");
+
+            var device = factory.device(DEVICE_ID, "secret", ANNOUNCED_ADDRESS, "3.3", true);
+
+            assertEquals(DEVICE_ID, device.id);
+        }
+    }
+
+    @Test
+    void shouldRejectStaticAddressWhichDisagreesWithDiscovery() throws Exception {
+        try (var factory = new Device.Factory(new Gson(), Duration.ofSeconds(3))) {
+            sendPacket(DISCOVERY_PACKET, DISCOVERY_PORT);
+            factory.discoveredDevice(DEVICE_ID, "secret");
+
+            assertThrows(IOException.class, () -> factory.device(DEVICE_ID, "secret", "192.0.2.1", "3.3", true));
+            assertThrows(IOException.class,
+                    () -> factory.device(DEVICE_ID, "secret", ANNOUNCED_ADDRESS, "3.4", true));
+            factory.device(DEVICE_ID, "secret", "192.0.2.1", "3.3", false);
+        }
+    }
+
+    @Test
+    void shouldFallBackToDiscoveryAfterRejectedStaticAddress() throws Exception {
+        try (var factory = new Device.Factory(new Gson(), Duration.ofSeconds(3))) {
+            sendPacket(DISCOVERY_PACKET, DISCOVERY_PORT);
+            factory.discoveredDevice(DEVICE_ID, "secret");
+            assertThrows(IOException.class, () -> factory.device(DEVICE_ID, "secret", "192.0.2.1", "3.3", true));
+
+            var device = assertTimeoutPreemptively(Duration.ofMillis(500), () -> factory.device(DEVICE_ID, "secret"));
+
+            assertEquals(DEVICE_ID, device.id);
+            assertFalse(device.isCached());
+        }
+    }
+
+    private final static String DEVICE_ID = "bf3f795ce962dadfd88hx5";
+    private final static String ANNOUNCED_ADDRESS = "192.168.188.120";
     private final static int DISCOVERY_PORT = 6667;
+    private final static String DISCOVERY_PACKET = "000055AA00000000000000130000009C00000000D09766676F3369EB10B5E9F132FD802A7A1E40D0CBEBCBBAAF6D9037D72ADB12C0E08B85428F69C0F5EB443B3428B648A46ECF78D163C8B2F111C8C375148D32C2D91FEA632B8557EB918162C1FC96744DC7FE823E307927FB0A44B0DFAE2C8DA2A472BD72B20E15E0F77B889F46B89A20780716567CE38AC1D583E9669FE8F0EEDD5C953BB9377560AE90DFBC45DBE2F9C05DDF0000AA55";
 
     private static void sendPacket(String message, int port) {
         var packet = HexUtils.hexToBytes(message);
@@ -0,0 +1,44 @@
+package de.malkusch.tuya.openhab.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.malkusch.tuya.openhab.api.Discovery.Discovered;
+
+public class DiscoveryCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldLoadWrittenEntries() {
+        var file = dir.resolve("discovery");
+        var discovered = new Discovered("192.168.0.10", "3.3", Instant.ofEpochMilli(1234));
+        try (var cache = new DiscoveryCache(file)) {
+            cache.put("device", discovered);
+        }
+
+        try (var cache = new DiscoveryCache(file)) {
+            assertEquals(Optional.of(discovered), cache.get("device"));
+        }
+    }
+
+    @Test
+    void shouldIgnoreMalformedEntries() throws Exception {
+        var file = dir.resolve("discovery");
+        Files.writeString(file, "broken\ndevice 192.168.0.10 3.3 1234\n");
+
+        try (var cache = new DiscoveryCache(file)) {
+            assertTrue(cache.get("broken").isEmpty());
+            assertEquals("192.168.0.10", cache.get("device").get().ip());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package de.malkusch.tuya.openhab.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class EnergyMeterTest {
+
+    @Test
+    void shouldKeepLatestSamples() {
+        var meter = new EnergyMeter(2);
+
+        meter.record(Map.of(19, 100.0, 18, 500.0, 20, 2300.0));
+        meter.record(Map.of(19, 200.0));
+        meter.record(Map.of(19, 300.0));
+
+        var watts = new double[3];
+        var amperes = new double[3];
+        var count = meter.history(new long[3], watts, amperes, new double[3]);
+        assertEquals(2, count);
+        assertArrayEquals(new double[] { 20, 30, 0 }, watts);
+        assertArrayEquals(new double[] { 0.5, 0.5, 0 }, amperes);
+    }
+
+    @Test
+    void shouldAggregateWindow() {
+        var meter = new EnergyMeter(10);
+
+        meter.record(Map.of(19, 100.0));
+        meter.record(Map.of(19, 300.0));
+        meter.record(Map.of(1, true));
+
+        var aggregate = meter.aggregate(Duration.ofMinutes(1));
+        assertEquals(2, aggregate.samples());
+        assertEquals(20, aggregate.averageWatts());
+        assertEquals(10, aggregate.minWatts());
+        assertEquals(30, aggregate.maxWatts());
+    }
+
+    @Test
+    void shouldStreamWithoutHistory() {
+        var meter = new EnergyMeter(0);
+        var received = new double[1];
+        meter.subscribe((time, watts, amperes, volts) -> received[0] = volts);
+
+        meter.record(Map.of(20, 2301.0));
+
+        assertEquals(230.1, received[0]);
+        assertEquals(0, meter.aggregate(Duration.ofMinutes(1)).samples());
+    }
+
+    @Test
+    void shouldRejectNegativeCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new EnergyMeter(-1));
+    }
+}
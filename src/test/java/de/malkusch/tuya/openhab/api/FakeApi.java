@@ -0,0 +1,120 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the calls of the decorator under test.
+ *
+ * Commands don't change the state, only {@link #syncState(State)} does.
+ * Asynchronous commands are confirmed at once, unless {@link #confirming} is
+ * off, in which case the test completes them with {@link #confirm(int)}.
+ */
+class FakeApi implements Api {
+
+    final List<Power> sent = new CopyOnWriteArrayList<>();
+    final List<Map<Integer, Object>> datapoints = new CopyOnWriteArrayList<>();
+    final List<Boolean> connections = new CopyOnWriteArrayList<>();
+    final AtomicInteger states = new AtomicInteger();
+    private final List<CompletableFuture<Void>> confirmations = new CopyOnWriteArrayList<>();
+    private final Device device;
+    volatile State state;
+    volatile boolean connected = true;
+    volatile boolean confirming = true;
+    volatile boolean closed = false;
+
+    FakeApi() {
+        this(null);
+    }
+
+    FakeApi(Device device) {
+        this.device = device;
+    }
+
+    /**
+     * @param command
+     *            index of the asynchronous command
+     */
+    void confirm(int command) {
+        confirmations.get(command).complete(null);
+    }
+
+    @Override
+    public void enable() {
+    }
+
+    @Override
+    public State state() throws IOException {
+        var state = this.state;
+        if (state == null) {
+            throw new IOException("State wasn't received");
+        }
+        return state;
+    }
+
+    @Override
+    public CompletableFuture<State> stateAsync() {
+        var state = this.state;
+        if (state == null) {
+            return failedFuture(new IOException("State wasn't received"));
+        }
+        return completedFuture(state);
+    }
+
+    @Override
+    public void syncState(State state) {
+        this.state = state;
+        states.incrementAndGet();
+    }
+
+    @Override
+    public void send(Power power) {
+        sent.add(power);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(Power power) {
+        sent.add(power);
+        CompletableFuture<Void> confirmation = confirming ? completedFuture(null) : new CompletableFuture<>();
+        confirmations.add(confirmation);
+        return confirmation;
+    }
+
+    @Override
+    public CompletableFuture<Void> sendOptimistic(Power power) {
+        return sendAsync(power);
+    }
+
+    @Override
+    public void set(Map<Integer, Object> datapoints) {
+        this.datapoints.add(datapoints);
+    }
+
+    @Override
+    public void syncConnected(boolean connected) {
+        this.connected = connected;
+        connections.add(connected);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public Device device() {
+        return device;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
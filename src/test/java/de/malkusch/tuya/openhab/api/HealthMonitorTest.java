@@ -0,0 +1,81 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.openhab.api.Api.Power;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class HealthMonitorTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(50);
+    private EventLoopGroup eventLoopGroup;
+    private HealthMonitor health;
+    private Device device;
+    private FakeApi api;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        health = new HealthMonitor(eventLoopGroup);
+        device = DeviceFixture.device(eventLoopGroup);
+        api = new FakeApi(device);
+        device.sync.enable(api);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        device.close();
+        eventLoopGroup.shutdownGracefully().await();
+    }
+
+    @Test
+    void shouldKeepDeviceWhichReplies() throws Exception {
+        health.probe(device, TIMEOUT);
+        device.sync.processDeviceStatus(Map.of(1, true));
+        awaitVerdict();
+
+        assertEquals(List.of(), api.connections);
+    }
+
+    @Test
+    void shouldDisconnectDeviceWithoutReply() throws Exception {
+        health.probe(device, TIMEOUT);
+        health.probe(device, TIMEOUT);
+        awaitVerdict();
+
+        assertEquals(List.of(false), api.connections);
+    }
+
+    @Test
+    void shouldNotRevertVerdictOnLateReply() throws Exception {
+        health.probe(device, TIMEOUT);
+        awaitVerdict();
+        device.sync.processDeviceStatus(Map.of(1, true));
+
+        assertEquals(List.of(false), api.connections);
+        assertEquals(Power.ON, api.state().power());
+
+        health.probe(device, TIMEOUT);
+        device.sync.processDeviceStatus(Map.of(1, true));
+        awaitVerdict();
+
+        assertEquals(List.of(false), api.connections);
+    }
+
+    /**
+     * The event loop runs scheduled tasks in the order of their deadline.
+     */
+    private void awaitVerdict() throws Exception {
+        eventLoopGroup.schedule(() -> null, TIMEOUT.toMillis() * 2, MILLISECONDS).get();
+    }
+}
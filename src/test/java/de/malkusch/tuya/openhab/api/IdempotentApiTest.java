@@ -0,0 +1,70 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.time.Instant.now;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+
+public class IdempotentApiTest {
+
+    private final FakeApi fake = new FakeApi();
+    private final LongAdder avoided = new LongAdder();
+    private final IdempotentApi api = new IdempotentApi(fake, Duration.ofMinutes(1), avoided);
+
+    @Test
+    void shouldSkipRedundantSend() throws Exception {
+        api.syncState(new State(Power.ON, now()));
+
+        api.send(Power.ON);
+        api.sendAsync(Power.ON).get();
+        api.send(Power.OFF);
+
+        assertEquals(List.of(Power.OFF), fake.sent);
+        assertEquals(2, avoided.sum());
+    }
+
+    @Test
+    void shouldSendAfterFreshnessExpired() throws Exception {
+        api.syncState(new State(Power.ON, now().minus(Duration.ofMinutes(2))));
+
+        api.send(Power.ON);
+
+        assertEquals(List.of(Power.ON), fake.sent);
+        assertEquals(0, avoided.sum());
+    }
+
+    @Test
+    void shouldSendWhileAnotherSendIsInFlight() throws Exception {
+        api.syncState(new State(Power.ON, now()));
+        fake.confirming = false;
+        var off = api.sendAsync(Power.OFF);
+
+        api.send(Power.ON);
+
+        assertEquals(List.of(Power.OFF, Power.ON), fake.sent);
+        fake.confirm(0);
+        off.get();
+
+        api.send(Power.ON);
+        assertEquals(List.of(Power.OFF, Power.ON), fake.sent);
+        assertEquals(1, avoided.sum());
+    }
+
+    @Test
+    void shouldSendWhileDisconnected() throws Exception {
+        api.syncState(new State(Power.ON, now()));
+        fake.connected = false;
+
+        api.send(Power.ON);
+
+        assertEquals(List.of(Power.ON), fake.sent);
+        assertEquals(0, avoided.sum());
+    }
+}
@@ -0,0 +1,108 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.time.Instant.now;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class ObservedApiTest {
+
+    private final List<Power> observed = new CopyOnWriteArrayList<>();
+    private final List<Instant> times = new CopyOnWriteArrayList<>();
+    private EventLoopGroup eventLoopGroup;
+    private Device device;
+    private Api.Observer observer;
+    private ObservedApi api;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        device = DeviceFixture.device(eventLoopGroup);
+        observer = new Api.Observer() {
+
+            @Override
+            public void stateChanged(String deviceId, State state) {
+                observed.add(state.power());
+                times.add(state.time());
+            }
+        };
+        var deviceApi = new DeviceApi(device, Duration.ofMillis(50), Duration.ofMinutes(5), Metrics.NONE);
+        api = new ObservedApi(deviceApi, observer);
+        api.syncState(new State(Power.OFF, now()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        api.close();
+        eventLoopGroup.shutdownGracefully().await();
+    }
+
+    @Test
+    void shouldPublishOptimisticState() throws Exception {
+        var confirmation = api.sendOptimistic(Power.ON);
+        assertEquals(List.of(Power.OFF, Power.ON), observed);
+
+        api.syncState(new State(Power.ON, now()));
+        confirmation.get();
+        assertEquals(List.of(Power.OFF, Power.ON, Power.ON), observed);
+    }
+
+    @Test
+    void shouldPublishConfirmedStateOnMismatch() throws Exception {
+        var confirmation = api.sendOptimistic(Power.ON);
+        api.syncState(new State(Power.OFF, now()));
+
+        assertThrows(ExecutionException.class, confirmation::get);
+        assertEquals(Power.OFF, observed.get(observed.size() - 1));
+    }
+
+    @Test
+    void shouldRevertOptimisticStateOnTimeout() throws Exception {
+        var confirmation = api.sendOptimistic(Power.ON);
+
+        assertThrows(ExecutionException.class, confirmation::get);
+        assertEquals(List.of(Power.OFF, Power.ON, Power.OFF), observed);
+    }
+
+    @Test
+    void shouldNotPublishSkippedSend() throws Exception {
+        var idempotent = new IdempotentApi(new FakeApi(device), Duration.ofMinutes(1), new LongAdder());
+        var skipping = new ObservedApi(idempotent, observer);
+        skipping.syncState(new State(Power.ON, now()));
+        observed.clear();
+
+        skipping.sendOptimistic(Power.ON).get();
+
+        assertEquals(List.of(), observed);
+    }
+
+    @Test
+    void shouldPublishUnknownStateOnTimeoutWithoutConfirmedState() throws Exception {
+        var deviceApi = new DeviceApi(device, Duration.ofMillis(50), Duration.ofMinutes(5), Metrics.NONE);
+        var unconfirmed = new ObservedApi(deviceApi, observer);
+        observed.clear();
+        times.clear();
+
+        var confirmation = unconfirmed.sendOptimistic(Power.ON);
+
+        assertThrows(ExecutionException.class, confirmation::get);
+        assertEquals(List.of(Power.ON, Power.OFF), observed);
+        assertEquals(Instant.MIN, times.get(1));
+    }
+}
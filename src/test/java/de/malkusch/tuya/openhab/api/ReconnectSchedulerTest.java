@@ -0,0 +1,220 @@
+package de.malkusch.tuya.openhab.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.api.Api.BackgroundReconnects;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class ReconnectSchedulerTest {
+
+    @Test
+    void shouldBoundBackoff() throws Exception {
+        try (var scheduler = new ReconnectScheduler(
+                new BackgroundReconnects(1, Duration.ofMillis(100), Duration.ofSeconds(1)))) {
+
+            for (int attempt = 0; attempt < 100; attempt++) {
+                var expected = Math.min(1000, 100L << Math.min(attempt, 20));
+                var backoff = scheduler.backoff(attempt);
+                assertTrue(backoff >= expected / 2 && backoff <= expected, "Attempt " + attempt + ": " + backoff);
+            }
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BackgroundReconnects(0, Duration.ofMillis(100), Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BackgroundReconnects(1, Duration.ZERO, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BackgroundReconnects(1, Duration.ofSeconds(2), Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void shouldCapConcurrentReconnects() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(2);
+        var targets = new ArrayList<FakeTarget>();
+        for (int i = 0; i < 5; i++) {
+            targets.add(new FakeTarget("device" + i, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return true;
+            }));
+        }
+
+        try (var scheduler = new ReconnectScheduler(
+                new BackgroundReconnects(2, Duration.ofMillis(1), Duration.ofMillis(1)))) {
+
+            targets.forEach(scheduler::schedule);
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            assertEquals(2, running.get());
+
+            release.countDown();
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+                while (targets.stream().anyMatch(it -> it.reconnectScheduled().get())) {
+                    Thread.sleep(1);
+                }
+            });
+        }
+        assertEquals(2, maxRunning.get());
+        targets.forEach(it -> assertEquals(1, it.attempts.get()));
+    }
+
+    @Test
+    void shouldRetryUntilReconnected() throws Exception {
+        var target = new FakeTarget("device", null);
+        target.reconnect = () -> target.attempts.get() >= 3;
+
+        try (var scheduler = new ReconnectScheduler(
+                new BackgroundReconnects(1, Duration.ofMillis(1), Duration.ofMillis(2)))) {
+
+            scheduler.schedule(target);
+            scheduler.schedule(target);
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+                while (target.reconnectScheduled().get()) {
+                    Thread.sleep(1);
+                }
+            });
+        }
+        assertEquals(3, target.attempts.get());
+    }
+
+    @Test
+    void shouldNotScheduleClosedTarget() throws Exception {
+        var target = new FakeTarget("device", () -> true);
+        target.closed = true;
+
+        try (var scheduler = new ReconnectScheduler(
+                new BackgroundReconnects(1, Duration.ofMillis(1), Duration.ofMillis(1)))) {
+
+            scheduler.schedule(target);
+        }
+        assertFalse(target.reconnectScheduled().get());
+        assertEquals(0, target.attempts.get());
+    }
+
+    @Test
+    void shouldDropScheduleAfterClose() {
+        var target = new FakeTarget("device", () -> true);
+        var scheduler = new ReconnectScheduler(new BackgroundReconnects(1, Duration.ofMillis(1), Duration.ofMillis(1)));
+        scheduler.close();
+
+        scheduler.schedule(target);
+
+        assertFalse(target.reconnectScheduled().get());
+        assertEquals(0, target.attempts.get());
+    }
+
+    @Test
+    void shouldDropRetryAfterClose() throws Exception {
+        var attempted = new CountDownLatch(1);
+        var target = new FakeTarget("device", null);
+        var scheduler = new ReconnectScheduler(new BackgroundReconnects(1, Duration.ofMillis(1), Duration.ofMillis(1)));
+        target.reconnect = () -> {
+            scheduler.close();
+            attempted.countDown();
+            return false;
+        };
+
+        scheduler.schedule(target);
+        assertTrue(attempted.await(1, TimeUnit.SECONDS));
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            while (target.reconnectScheduled().get()) {
+                Thread.sleep(1);
+            }
+        });
+        assertEquals(1, target.attempts.get());
+    }
+
+    @Test
+    void shouldFailFastWhenOffline() throws Exception {
+        var eventLoopGroup = new NioEventLoopGroup(1);
+        var device = DeviceFixture.device(eventLoopGroup);
+        var timeout = Duration.ofMillis(100);
+        var deviceApi = new DeviceApi(device, timeout, Duration.ofMinutes(5), Metrics.NONE);
+        try (var scheduler = new ReconnectScheduler(
+                new BackgroundReconnects(1, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+                var api = new ReconnectingApi(deviceApi, timeout, Metrics.NONE, Optional.of(scheduler))) {
+
+            var error = assertTimeoutPreemptively(Duration.ofMillis(50),
+                    () -> assertThrows(IOException.class, () -> api.send(Power.ON)));
+            assertEquals("Device is offline", error.getMessage());
+            assertTrue(api.reconnectScheduled().get());
+
+        } finally {
+            device.close();
+            eventLoopGroup.shutdownGracefully().await();
+        }
+    }
+
+    private static class FakeTarget implements ReconnectScheduler.Target {
+
+        private static interface Reconnect {
+            boolean reconnect();
+        }
+
+        private final String deviceId;
+        private final AtomicBoolean reconnectScheduled = new AtomicBoolean();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile Reconnect reconnect;
+        private volatile boolean closed;
+
+        FakeTarget(String deviceId, Reconnect reconnect) {
+            this.deviceId = deviceId;
+            this.reconnect = reconnect;
+        }
+
+        @Override
+        public String deviceId() {
+            return deviceId;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return false;
+        }
+
+        @Override
+        public boolean reconnect() {
+            attempts.incrementAndGet();
+            return reconnect.reconnect();
+        }
+
+        @Override
+        public AtomicBoolean reconnectScheduled() {
+            return reconnectScheduled;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.malkusch.tuya.openhab.api;
+
+import static java.time.Instant.now;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.malkusch.tuya.Metrics;
+import de.malkusch.tuya.openhab.api.Api.Power;
+import de.malkusch.tuya.openhab.api.Api.State;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class ReconnectingApiTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(100);
+    private final List<Boolean> reconnects = new CopyOnWriteArrayList<>();
+    private EventLoopGroup eventLoopGroup;
+    private Device device;
+    private ReconnectingApi api;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        device = DeviceFixture.device(eventLoopGroup);
+        var metrics = new Metrics() {
+
+            @Override
+            public void reconnected(String deviceId, long nanos, boolean success) {
+                reconnects.add(success);
+            }
+        };
+        var deviceApi = new DeviceApi(device, TIMEOUT, Duration.ofMinutes(5), metrics);
+        api = new ReconnectingApi(deviceApi, TIMEOUT, metrics, Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        api.close();
+        eventLoopGroup.shutdownGracefully().await();
+    }
+
+    @Test
+    void shouldShareAsyncReconnectOfConcurrentCallers() throws Exception {
+        api.syncState(new State(Power.ON, now()));
+
+        var first = api.stateAsync();
+        var second = api.stateAsync();
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        api.syncConnected(true);
+
+        assertEquals(Power.ON, first.get().power());
+        assertEquals(Power.ON, second.get().power());
+        assertEquals(List.of(true), reconnects);
+    }
+
+    @Test
+    void shouldTimeOutAsyncReconnect() throws Exception {
+        var first = api.sendAsync(Power.ON);
+        var second = api.sendAsync(Power.ON);
+
+        var error = assertThrows(ExecutionException.class, first::get);
+        assertInstanceOf(IOException.class, error.getCause());
+        assertEquals("Reconnect failed", error.getCause().getMessage());
+        assertThrows(ExecutionException.class, second::get);
+        assertEquals(List.of(false), reconnects);
+    }
+
+    @Test
+    void shouldJoinBlockingReconnect() throws Exception {
+        api.syncState(new State(Power.ON, now()));
+        var blocking = new FutureTask<>(api::state);
+        var thread = new Thread(blocking);
+        thread.start();
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+
+        var async = api.stateAsync();
+        api.syncConnected(true);
+
+        assertEquals(Power.ON, blocking.get().power());
+        assertEquals(Power.ON, async.get().power());
+        assertEquals(List.of(true), reconnects);
+    }
+
+    @Test
+    void shouldNotReconnectWhenConnected() throws Exception {
+        api.syncConnected(true);
+        api.syncState(new State(Power.OFF, now()));
+
+        assertEquals(Power.OFF, api.stateAsync().get().power());
+        assertEquals(List.of(), reconnects);
+    }
+}
@@ -0,0 +1,51 @@
+package org.openhab.core.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class HexUtilsTest {
+
+    private static final byte[] BYTES = { 0x00, 0x01, 0x7F, (byte) 0x80, (byte) 0xAB, (byte) 0xFF };
+    private static final String HEX = "00017F80ABFF";
+
+    @Test
+    void shouldEncode() {
+        assertEquals(HEX, HexUtils.bytesToHex(BYTES));
+        assertEquals("00-01-7F-80-AB-FF", HexUtils.bytesToHex(BYTES, "-"));
+        assertEquals(HEX, HexUtils.bytesToHex(ByteBuffer.wrap(BYTES)));
+        assertEquals(HEX, HexUtils.bytesToHex(ByteBuffer.allocateDirect(BYTES.length).put(BYTES).flip()));
+    }
+
+    @Test
+    void shouldEncodeIntoArray() {
+        var chars = new char[8];
+
+        var written = HexUtils.bytesToHex(BYTES, 2, 3, chars, 1);
+
+        assertEquals(6, written);
+        assertEquals("\u00007F80AB\u0000", new String(chars));
+    }
+
+    @Test
+    void shouldDecode() {
+        assertArrayEquals(BYTES, HexUtils.hexToBytes(HEX));
+        assertArrayEquals(BYTES, HexUtils.hexToBytes(HEX.toLowerCase()));
+        assertArrayEquals(BYTES, HexUtils.hexToBytes("00-01-7F-80-AB-FF", "-"));
+
+        var buffer = ByteBuffer.allocate(BYTES.length);
+        HexUtils.hexToBytes(HEX, buffer);
+        assertArrayEquals(BYTES, buffer.array());
+    }
+
+    @Test
+    void shouldRejectInvalidHex() {
+        assertThrows(IllegalArgumentException.class, () -> HexUtils.hexToBytes("ABC"));
+        assertThrows(IllegalArgumentException.class, () -> HexUtils.hexToBytes("0G"));
+        assertThrows(IllegalArgumentException.class, () -> HexUtils.hexToBytes("0\u00E4"));
+    }
+}